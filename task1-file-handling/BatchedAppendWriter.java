@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Long-lived, thread-safe append writer with group commit
+ * Replaces repeated FileHandlingUtility.appendToFile calls in append-heavy
+ * workloads: the file is opened once, records submitted by many threads are
+ * coalesced into one buffer, and each batch is written (and optionally
+ * fsynced) in a single flush.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class BatchedAppendWriter implements AutoCloseable {
+
+    /**
+     * How hard each flush pushes data to stable storage
+     */
+    public enum Durability {
+        /** Leave syncing to the operating system */
+        NONE,
+        /** One fsync after every batch */
+        FSYNC_PER_BATCH,
+        /** One fsync after every record */
+        FSYNC_PER_RECORD
+    }
+
+    public static final int DEFAULT_MAX_BATCH_RECORDS = 512;
+    public static final long DEFAULT_LINGER_MILLIS = 2;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final PendingRecord CLOSE_MARKER = new PendingRecord(new byte[0]);
+
+    private final FileChannel channel;
+    private final int maxBatchRecords;
+    private final long lingerNanos;
+    private final Durability durability;
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong recordCount = new AtomicLong();
+    // Appends share the read lock; close() takes the write lock so no record can follow the close marker
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+    /**
+     * Opens a writer with default batching and fsync-per-batch durability
+     * @param file File to append to (created if missing)
+     */
+    public BatchedAppendWriter(Path file) throws IOException {
+        this(file, DEFAULT_MAX_BATCH_RECORDS, DEFAULT_LINGER_MILLIS, Durability.FSYNC_PER_BATCH);
+    }
+
+    /**
+     * Opens a writer
+     * @param file File to append to (created if missing)
+     * @param maxBatchRecords Maximum number of records per flush
+     * @param lingerMillis How long a flush waits for more records to arrive
+     * @param durability Fsync policy
+     */
+    public BatchedAppendWriter(Path file, int maxBatchRecords, long lingerMillis, Durability durability)
+            throws IOException {
+        if (maxBatchRecords <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.maxBatchRecords = maxBatchRecords;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.durability = durability;
+        this.flusher = new Thread(this::flushLoop, "append-writer-" + file.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues a record for appending
+     * The record is written as-is; callers add their own line terminator.
+     * @param record Text to append
+     * @return Future completed once the record's batch has been flushed
+     */
+    public CompletableFuture<Void> append(String record) {
+        PendingRecord pending = new PendingRecord(record.getBytes(StandardCharsets.UTF_8));
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                pending.future.completeExceptionally(new IOException("Writer is closed"));
+            } else {
+                queue.add(pending);
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return pending.future;
+    }
+
+    /**
+     * Number of flushes performed so far
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * Number of records written so far
+     */
+    public long getRecordCount() {
+        return recordCount.get();
+    }
+
+    /**
+     * Average number of records coalesced into each flush
+     */
+    public double getRecordsPerFlush() {
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0.0 : (double) recordCount.get() / flushes;
+    }
+
+    /**
+     * Flushes everything queued so far and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+            queue.add(CLOSE_MARKER);
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void flushLoop() {
+        List<PendingRecord> batch = new ArrayList<>(maxBatchRecords);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            stopping = batch.remove(CLOSE_MARKER);
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+
+        // Only reached early if the flusher was interrupted: refuse further appends,
+        // then reject what was collected or queued but never written
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        queue.drainTo(batch);
+        for (PendingRecord late : batch) {
+            if (late != CLOSE_MARKER) {
+                late.future.completeExceptionally(new IOException("Writer is closed"));
+            }
+        }
+    }
+
+    /**
+     * Waits for the first record, then lingers until the batch is full
+     * or the close marker arrives
+     */
+    private void collectBatch(List<PendingRecord> batch) throws InterruptedException {
+        batch.clear();
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + lingerNanos;
+
+        while (batch.size() < maxBatchRecords && batch.get(batch.size() - 1) != CLOSE_MARKER) {
+            queue.drainTo(batch, maxBatchRecords - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchRecords || remaining <= 0) {
+                break;
+            }
+            PendingRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<PendingRecord> batch) {
+        try {
+            if (durability == Durability.FSYNC_PER_RECORD) {
+                for (PendingRecord record : batch) {
+                    write(record.bytes);
+                    channel.force(false);
+                }
+            } else {
+                for (PendingRecord record : batch) {
+                    write(record.bytes);
+                }
+                drain();
+                if (durability == Durability.FSYNC_PER_BATCH) {
+                    channel.force(false);
+                }
+            }
+            flushCount.incrementAndGet();
+            recordCount.addAndGet(batch.size());
+            for (PendingRecord record : batch) {
+                record.future.complete(null);
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending batch: " + e.getMessage());
+            buffer.clear();
+            for (PendingRecord record : batch) {
+                record.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Copies a record into the shared buffer; per-record mode writes it straight through
+     */
+    private void write(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.capacity()) {
+            drain();
+            buffer = ByteBuffer.allocateDirect(Math.max(bytes.length, buffer.capacity() * 2));
+        } else if (bytes.length > buffer.remaining()) {
+            drain();
+        }
+        buffer.put(bytes);
+        if (durability == Durability.FSYNC_PER_RECORD) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * A queued record and the future its submitter waits on
+     */
+    private static class PendingRecord {
+        final byte[] bytes;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingRecord(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block-compressed file format with a sparse index and per-block checksums
+ * Data is cut into fixed-size blocks, each deflated independently and stored
+ * behind a small header holding its sizes and a CRC32C of the raw bytes.
+ * A sidecar ".idx" file maps the raw offset of every block to its position in
+ * the file, so a range read inflates only the blocks it touches. The index is
+ * rebuilt from the block headers when it is missing.
+ *
+ * Block layout: type (1 byte), raw length (4), stored length (4), CRC32C (4), data
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class BlockCompressedFile {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    static final int HEADER_SIZE = 13;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final byte TYPE_STORED = 0;
+    private static final byte TYPE_DEFLATED = 1;
+
+    private BlockCompressedFile() {
+    }
+
+    /**
+     * Opens a writer that replaces or appends to a block-compressed file
+     * @param file File to write
+     * @param append true to add blocks after the existing ones
+     * @param blockSize Raw bytes per block
+     * @return Writer that must be closed to flush the last block
+     */
+    public static Writer openWriter(Path file, boolean append, int blockSize) throws IOException {
+        return new Writer(file, append, blockSize);
+    }
+
+    /**
+     * Number of uncompressed bytes stored in the file
+     */
+    public static long rawSize(Path file) throws IOException {
+        Index index = loadIndex(file);
+        if (index.count == 0) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, index.fileOffsets[index.count - 1]);
+            return index.rawOffsets[index.count - 1] + header.getInt(1);
+        }
+    }
+
+    /**
+     * Decompresses the whole file, verifying every block
+     * @param file File to read
+     * @param out Destination for the raw bytes
+     */
+    public static void readAll(Path file, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                Block block = readBlock(channel, position);
+                out.write(block.data);
+                position += HEADER_SIZE + block.storedLength;
+            }
+        }
+    }
+
+    /**
+     * Reads a range of uncompressed bytes, inflating only the blocks it covers
+     * @param file File to read
+     * @param position Raw offset of the first byte
+     * @param length Number of bytes to read
+     * @return Bytes read, shorter than length at end of data
+     */
+    public static byte[] readRange(Path file, long position, int length) throws IOException {
+        Index index = loadIndex(file);
+        byte[] result = new byte[length];
+        int filled = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int blockNumber = index.blockContaining(position);
+            while (filled < length && blockNumber >= 0 && blockNumber < index.count) {
+                Block block = readBlock(channel, index.fileOffsets[blockNumber]);
+                int start = (int) (position + filled - index.rawOffsets[blockNumber]);
+                int chunk = Math.min(length - filled, block.data.length - start);
+                if (chunk > 0) {
+                    System.arraycopy(block.data, start, result, filled, chunk);
+                    filled += chunk;
+                }
+                blockNumber++;
+            }
+        }
+        return filled == length ? result : Arrays.copyOf(result, filled);
+    }
+
+    /**
+     * Checks the CRC32C of every block
+     * @return true if all blocks are intact
+     */
+    public static boolean verify(Path file) {
+        try {
+            readAll(file, OutputStream.nullOutputStream());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Block verification failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    static Path indexPath(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel, long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (LazyFileReader.readRange(channel, position, header) < HEADER_SIZE) {
+            throw new IOException("Truncated block header at offset " + position);
+        }
+        return header.flip();
+    }
+
+    private static Block readBlock(FileChannel channel, long position) throws IOException {
+        ByteBuffer header = readHeader(channel, position);
+        byte type = header.get();
+        int rawLength = header.getInt();
+        int storedLength = header.getInt();
+        int checksum = header.getInt();
+
+        ByteBuffer stored = ByteBuffer.allocate(storedLength);
+        if (LazyFileReader.readRange(channel, position + HEADER_SIZE, stored) < storedLength) {
+            throw new IOException("Truncated block at offset " + position);
+        }
+
+        byte[] data;
+        if (type == TYPE_STORED) {
+            data = stored.array();
+        } else {
+            data = new byte[rawLength];
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(stored.array());
+                int inflated = inflater.inflate(data);
+                if (inflated != rawLength) {
+                    throw new IOException("Corrupt block at offset " + position);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block at offset " + position, e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in block at offset " + position);
+        }
+        return new Block(data, storedLength);
+    }
+
+    /**
+     * Loads the sidecar index, rebuilding it from block headers if it is missing
+     */
+    static Index loadIndex(Path file) throws IOException {
+        Path indexFile = indexPath(file);
+        if (Files.exists(indexFile)) {
+            byte[] bytes = Files.readAllBytes(indexFile);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            Index index = new Index(bytes.length / INDEX_ENTRY_SIZE);
+            while (buffer.remaining() >= INDEX_ENTRY_SIZE) {
+                index.add(buffer.getLong(), buffer.getLong());
+            }
+            return index;
+        }
+        return rebuildIndex(file);
+    }
+
+    private static Index rebuildIndex(Path file) throws IOException {
+        Index index = new Index(16);
+        if (!Files.exists(file)) {
+            return index;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            long rawOffset = 0;
+            while (position < size) {
+                ByteBuffer header = readHeader(channel, position);
+                index.add(rawOffset, position);
+                rawOffset += header.getInt(1);
+                position += HEADER_SIZE + header.getInt(5);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(index.count * INDEX_ENTRY_SIZE);
+        for (int i = 0; i < index.count; i++) {
+            buffer.putLong(index.rawOffsets[i]).putLong(index.fileOffsets[i]);
+        }
+        Files.write(indexPath(file), buffer.array());
+        return index;
+    }
+
+    /**
+     * In-memory copy of the sparse index: raw offset and file offset per block
+     */
+    static class Index {
+        long[] rawOffsets;
+        long[] fileOffsets;
+        int count;
+
+        Index(int capacity) {
+            rawOffsets = new long[Math.max(capacity, 1)];
+            fileOffsets = new long[Math.max(capacity, 1)];
+        }
+
+        void add(long rawOffset, long fileOffset) {
+            if (count == rawOffsets.length) {
+                rawOffsets = Arrays.copyOf(rawOffsets, count * 2);
+                fileOffsets = Arrays.copyOf(fileOffsets, count * 2);
+            }
+            rawOffsets[count] = rawOffset;
+            fileOffsets[count] = fileOffset;
+            count++;
+        }
+
+        /**
+         * Binary search for the last block starting at or before the raw offset
+         */
+        int blockContaining(long rawOffset) {
+            int index = Arrays.binarySearch(rawOffsets, 0, count, rawOffset);
+            return index >= 0 ? index : -index - 2;
+        }
+    }
+
+    private static class Block {
+        final byte[] data;
+        final int storedLength;
+
+        Block(byte[] data, int storedLength) {
+            this.data = data;
+            this.storedLength = storedLength;
+        }
+    }
+
+    /**
+     * Buffers raw bytes and writes them out one compressed block at a time
+     */
+    public static class Writer extends OutputStream {
+        private final FileChannel data;
+        private final FileChannel index;
+        private final byte[] block;
+        private final byte[] compressed;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32C crc = new CRC32C();
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        private int blockLength;
+        private long rawOffset;
+
+        Writer(Path file, boolean append, int blockSize) throws IOException {
+            if (blockSize <= 0) {
+                throw new IllegalArgumentException("Block size must be positive");
+            }
+            if (append && Files.exists(file)) {
+                // Make sure the index exists and covers the current blocks
+                rawOffset = rawSize(file);
+            } else {
+                append = false;
+            }
+            StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            this.data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+            this.index = FileChannel.open(indexPath(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+            this.block = new byte[blockSize];
+            // Deflate can expand incompressible data slightly; such blocks are stored raw
+            this.compressed = new byte[blockSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            block[blockLength++] = (byte) b;
+            if (blockLength == block.length) {
+                flushBlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int chunk = Math.min(length, block.length - blockLength);
+                System.arraycopy(bytes, offset, block, blockLength, chunk);
+                blockLength += chunk;
+                offset += chunk;
+                length -= chunk;
+                if (blockLength == block.length) {
+                    flushBlock();
+                }
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockLength == 0) {
+                return;
+            }
+            crc.reset();
+            crc.update(block, 0, blockLength);
+
+            deflater.reset();
+            deflater.setInput(block, 0, blockLength);
+            deflater.finish();
+            int storedLength = deflater.deflate(compressed);
+            boolean deflated = deflater.finished() && storedLength < blockLength;
+
+            byte[] payload = deflated ? compressed : block;
+            if (!deflated) {
+                storedLength = blockLength;
+            }
+
+            indexEntry.clear();
+            indexEntry.putLong(rawOffset).putLong(data.size()).flip();
+            header.clear();
+            header.put(deflated ? TYPE_DEFLATED : TYPE_STORED)
+                  .putInt(blockLength).putInt(storedLength).putInt((int) crc.getValue()).flip();
+
+            ByteBuffer body = ByteBuffer.wrap(payload, 0, storedLength);
+            while (header.hasRemaining() || body.hasRemaining()) {
+                data.write(new ByteBuffer[] {header, body});
+            }
+            while (indexEntry.hasRemaining()) {
+                index.write(indexEntry);
+            }
+
+            rawOffset += blockLength;
+            blockLength = 0;
+        }
+
+        /**
+         * Writes the final partial block and closes the file and its index
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+            } finally {
+                deflater.end();
+                data.close();
+                index.close();
+            }
+        }
+    }
+}
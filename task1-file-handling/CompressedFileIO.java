@@ -0,0 +1,172 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Pluggable encodings for the FileHandlingUtility read, write and append paths
+ * GZIP and DEFLATE use the JDK streams; appends add a new member that readers
+ * decode transparently. BLOCK uses BlockCompressedFile, which keeps a block
+ * index and per-block CRC32C so range reads stay cheap and verified.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class CompressedFileIO {
+
+    /**
+     * On-disk encoding of a file
+     */
+    public enum Mode {
+        PLAIN,
+        GZIP,
+        DEFLATE,
+        BLOCK
+    }
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private CompressedFileIO() {
+    }
+
+    /**
+     * Writes or appends bytes in the given encoding
+     * @param file File to write
+     * @param content Raw bytes to store
+     * @param mode Encoding to use
+     * @param append true to add to the existing content
+     */
+    public static void write(Path file, byte[] content, Mode mode, boolean append) throws IOException {
+        if (mode == Mode.BLOCK) {
+            try (BlockCompressedFile.Writer writer = BlockCompressedFile.openWriter(
+                    file, append, BlockCompressedFile.DEFAULT_BLOCK_SIZE)) {
+                writer.write(content);
+            }
+            return;
+        }
+
+        OutputStream raw = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        try (OutputStream out = wrap(raw, mode)) {
+            out.write(content);
+        }
+    }
+
+    /**
+     * Reads and decodes the whole file
+     * @param file File to read
+     * @param mode Encoding the file was written with
+     * @return Raw bytes
+     */
+    public static byte[] read(Path file, Mode mode) throws IOException {
+        if (mode == Mode.PLAIN) {
+            return Files.readAllBytes(file);
+        }
+        if (mode == Mode.BLOCK) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BlockCompressedFile.readAll(file, out);
+            return out.toByteArray();
+        }
+        try (InputStream in = openInputStream(file, mode)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Reads a range of raw bytes
+     * PLAIN and BLOCK seek directly; the stream encodings have to decode
+     * everything before the range.
+     * @param file File to read
+     * @param position Raw offset of the first byte
+     * @param length Number of bytes to read
+     * @param mode Encoding the file was written with
+     * @return Bytes read, shorter than length at end of data
+     */
+    public static byte[] readRange(Path file, long position, int length, Mode mode) throws IOException {
+        switch (mode) {
+            case PLAIN:
+                ByteBuffer buffer = LazyFileReader.readRange(file, position, length);
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            case BLOCK:
+                return BlockCompressedFile.readRange(file, position, length);
+            default:
+                try (InputStream in = openInputStream(file, mode)) {
+                    in.skipNBytes(position);
+                    return in.readNBytes(length);
+                } catch (EOFException e) {
+                    return new byte[0];
+                }
+        }
+    }
+
+    /**
+     * Opens a decoding stream for the GZIP, DEFLATE or PLAIN encodings
+     */
+    public static InputStream openInputStream(Path file, Mode mode) throws IOException {
+        InputStream raw = new BufferedInputStream(Files.newInputStream(file), STREAM_BUFFER_SIZE);
+        switch (mode) {
+            case PLAIN:
+                return raw;
+            case GZIP:
+                // Handles the concatenated members produced by appends
+                return new GZIPInputStream(raw, STREAM_BUFFER_SIZE);
+            case DEFLATE:
+                return new ConcatenatedInflaterInputStream(raw);
+            default:
+                raw.close();
+                throw new IllegalArgumentException("Streaming reads are not supported for " + mode);
+        }
+    }
+
+    private static OutputStream wrap(OutputStream raw, Mode mode) throws IOException {
+        switch (mode) {
+            case GZIP:
+                return new GZIPOutputStream(raw, STREAM_BUFFER_SIZE);
+            case DEFLATE:
+                return new DeflaterOutputStream(raw);
+            default:
+                return new BufferedOutputStream(raw, STREAM_BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Inflater stream that continues into the next zlib stream when one ends,
+     * so files built from several appends read back as one
+     */
+    private static class ConcatenatedInflaterInputStream extends InflaterInputStream {
+
+        ConcatenatedInflaterInputStream(InputStream in) {
+            super(new PushbackInputStream(in));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int length) throws IOException {
+            while (true) {
+                int n = super.read(b, off, length);
+                if (n != -1 || !inf.finished()) {
+                    return n;
+                }
+                int remaining = inf.getRemaining();
+                if (remaining > 0) {
+                    inf.reset();
+                    inf.setInput(buf, len - remaining, remaining);
+                } else {
+                    PushbackInputStream source = (PushbackInputStream) in;
+                    int next = source.read();
+                    if (next == -1) {
+                        return -1;
+                    }
+                    source.unread(next);
+                    inf.reset();
+                }
+            }
+        }
+    }
+}
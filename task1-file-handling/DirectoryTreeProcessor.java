@@ -0,0 +1,227 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Applies a per-file operation to every file in a directory tree in parallel
+ * The walker feeds a bounded worker pool; a semaphore caps the number of files
+ * in flight so the walk cannot run arbitrarily far ahead of the workers.
+ * Failures are collected per file and returned in a TreeReport instead of
+ * aborting the job.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class DirectoryTreeProcessor implements AutoCloseable {
+
+    /**
+     * Operation applied to a single file; must not return null
+     */
+    @FunctionalInterface
+    public interface FileOperation<R> {
+        R apply(Path file) throws IOException;
+    }
+
+    private final ExecutorService pool;
+    private final int maxInFlight;
+
+    /**
+     * Creates a processor sized to the number of available cores
+     */
+    public DirectoryTreeProcessor() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Creates a processor
+     * @param parallelism Number of worker threads
+     * @param maxInFlight Maximum number of files queued or running at once
+     */
+    public DirectoryTreeProcessor(int parallelism, int maxInFlight) {
+        if (parallelism <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Parallelism and in-flight limit must be positive");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Runs an operation on every regular file under root
+     * @param root Directory to walk recursively
+     * @param filter Selects the files to process
+     * @param operation Operation to apply to each file
+     * @return Report with per-file results and failures
+     */
+    public <R> TreeReport<R> process(Path root, Predicate<Path> filter, FileOperation<R> operation)
+            throws IOException {
+        long start = System.nanoTime();
+        TreeReport<R> report = new TreeReport<>();
+        Semaphore permits = new Semaphore(maxInFlight);
+
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile() || !filter.test(file)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    permits.acquireUninterruptibly();
+                    try {
+                        pool.execute(() -> {
+                            try {
+                                report.results.put(file, operation.apply(file));
+                            } catch (IOException | RuntimeException e) {
+                                report.failures.put(file, e);
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        permits.release();
+                        report.failures.put(file, e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    report.failures.put(file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            // Wait for the files already dispatched
+            permits.acquireUninterruptibly(maxInFlight);
+        }
+
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * Shuts down the worker pool
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Operation that replaces text in a file using the streaming engine
+     * @return Operation yielding the number of replacements per file
+     */
+    public static FileOperation<Long> replaceAll(String oldText, String newText) {
+        StreamingReplacer replacer = new StreamingReplacer(oldText, newText);
+        return replacer::replace;
+    }
+
+    /**
+     * Operation that measures the size and line count of a file
+     */
+    public static FileOperation<FileStats> stats() {
+        return file -> {
+            long[] lines = {0};
+            long bytes = LazyFileReader.chunks(file, LazyFileReader.DEFAULT_BUFFER_SIZE, chunk -> {
+                lines[0] += countLineFeeds(chunk);
+            });
+            return new FileStats(bytes, lines[0]);
+        };
+    }
+
+    /**
+     * Operation that deletes a file
+     * @return Operation yielding whether the file existed
+     */
+    public static FileOperation<Boolean> delete() {
+        return Files::deleteIfExists;
+    }
+
+    private static long countLineFeeds(ByteBuffer chunk) {
+        long count = 0;
+        while (chunk.hasRemaining()) {
+            if (chunk.get() == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Size and line count of one file, or of a whole tree when summed
+     */
+    public static class FileStats {
+        private final long bytes;
+        private final long lines;
+
+        public FileStats(long bytes, long lines) {
+            this.bytes = bytes;
+            this.lines = lines;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * Adds up the stats of every file in a report
+         */
+        public static FileStats total(TreeReport<FileStats> report) {
+            long bytes = 0;
+            long lines = 0;
+            for (FileStats stats : report.getResults().values()) {
+                bytes += stats.bytes;
+                lines += stats.lines;
+            }
+            return new FileStats(bytes, lines);
+        }
+
+        @Override
+        public String toString() {
+            return bytes + " bytes, " + lines + " lines";
+        }
+    }
+
+    /**
+     * Outcome of a tree job: one result or one failure per visited file
+     */
+    public static class TreeReport<R> {
+        private final Map<Path, R> results = new ConcurrentHashMap<>();
+        private final Map<Path, Exception> failures = new ConcurrentHashMap<>();
+        private long elapsedNanos;
+
+        public Map<Path, R> getResults() {
+            return Collections.unmodifiableMap(results);
+        }
+
+        public Map<Path, Exception> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        public int getProcessedCount() {
+            return results.size();
+        }
+
+        public int getFailedCount() {
+            return failures.size();
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "Processed " + results.size() + " files, " + failures.size()
+                + " failed, in " + getElapsedMillis() + " ms";
+        }
+    }
+}
@@ -1,7 +1,10 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 /**
  * File Handling Utility - Task 1
@@ -26,6 +29,55 @@ public class FileHandlingUtility {
         }
     }
     
+    /**
+     * Reads a text file stored in the given encoding
+     * @param filePath Path to the file to read
+     * @param mode Encoding the file was written with
+     * @return Content of the file as String, or null on error
+     */
+    public static String readFile(String filePath, CompressedFileIO.Mode mode) {
+        try {
+            return new String(CompressedFileIO.read(Paths.get(filePath), mode), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lazily reads a text file line by line
+     * The returned stream must be closed to release the file.
+     * @param filePath Path to the file to read
+     * @return Stream of lines, or null on error
+     */
+    public static Stream<String> readLines(String filePath) {
+        try {
+            return LazyFileReader.lines(Paths.get(filePath));
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a range of bytes from a file without loading the rest of it
+     * @param filePath Path to the file to read
+     * @param position Offset of the first byte
+     * @param length Number of bytes to read
+     * @return Bytes read (fewer at end of file), or null on error
+     */
+    public static byte[] readRange(String filePath, long position, int length) {
+        try {
+            ByteBuffer buffer = LazyFileReader.readRange(Paths.get(filePath), position, length);
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Writes content to a text file
      * @param filePath Path to the file to write
@@ -42,8 +94,27 @@ public class FileHandlingUtility {
         }
     }
     
+    /**
+     * Writes content to a text file in the given encoding
+     * @param filePath Path to the file to write
+     * @param content Content to write to the file
+     * @param mode Encoding to store the file in
+     * @return true if successful, false otherwise
+     */
+    public static boolean writeFile(String filePath, String content, CompressedFileIO.Mode mode) {
+        try {
+            CompressedFileIO.write(Paths.get(filePath), content.getBytes(StandardCharsets.UTF_8), mode, false);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing file: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Appends content to an existing file
+     * Opens and closes the file on every call; append-heavy callers should
+     * keep a BatchedAppendWriter open instead.
      * @param filePath Path to the file to append to
      * @param content Content to append
      * @return true if successful, false otherwise
@@ -58,8 +129,27 @@ public class FileHandlingUtility {
         }
     }
     
+    /**
+     * Appends content to a file stored in the given encoding
+     * @param filePath Path to the file to append to
+     * @param content Content to append
+     * @param mode Encoding the file is stored in
+     * @return true if successful, false otherwise
+     */
+    public static boolean appendToFile(String filePath, String content, CompressedFileIO.Mode mode) {
+        try {
+            CompressedFileIO.write(Paths.get(filePath), content.getBytes(StandardCharsets.UTF_8), mode, true);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error appending to file: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Modifies content in a file by replacing old text with new text
+     * The file is streamed through StreamingReplacer, so memory use stays
+     * bounded regardless of file size.
      * @param filePath Path to the file to modify
      * @param oldText Text to replace
      * @param newText Replacement text
@@ -67,9 +157,13 @@ public class FileHandlingUtility {
      */
     public static boolean modifyFile(String filePath, String oldText, String newText) {
         try {
-            String content = Files.readString(Paths.get(filePath));
-            String modifiedContent = content.replace(oldText, newText);
-            Files.writeString(Paths.get(filePath), modifiedContent);
+            if (oldText.isEmpty()) {
+                // Degenerate case: String.replace inserts between every character
+                String content = Files.readString(Paths.get(filePath));
+                Files.writeString(Paths.get(filePath), content.replace(oldText, newText));
+                return true;
+            }
+            new StreamingReplacer(oldText, newText).replace(Paths.get(filePath));
             return true;
         } catch (IOException e) {
             System.err.println("Error modifying file: " + e.getMessage());
@@ -77,6 +171,22 @@ public class FileHandlingUtility {
         }
     }
     
+    /**
+     * Copies a file byte for byte using FileTransfer (safe for binary files)
+     * @param sourcePath Path to the file to copy
+     * @param targetPath Path to the destination file
+     * @return true if successful, false otherwise
+     */
+    public static boolean copyFile(String sourcePath, String targetPath) {
+        try {
+            FileTransfer.copy(Paths.get(sourcePath), Paths.get(targetPath), null);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error copying file: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Deletes a file
      * @param filePath Path to the file to delete
@@ -0,0 +1,252 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental file watcher with tail -F semantics
+ * Replaces polling with FileHandlingUtility.readFile: each watched file keeps
+ * its last read offset, and on change only the appended bytes are read and
+ * split into complete lines. Truncation and rotation (a new file under the same
+ * name) restart from offset 0. Bursts of events are debounced so a busy writer
+ * triggers one read per quiet period instead of one per write.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class FileTailWatcher implements AutoCloseable {
+
+    /**
+     * Receives the data appended to watched files
+     */
+    public interface TailListener {
+        /**
+         * Called with the complete lines appended since the last call
+         */
+        void onLines(Path file, List<String> lines);
+
+        /**
+         * Called when the file shrank and reading restarted from the beginning
+         */
+        default void onTruncated(Path file) {
+        }
+
+        /**
+         * Called when the file was replaced and reading restarted on the new file
+         */
+        default void onRotated(Path file) {
+        }
+    }
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final WatchService watchService;
+    private final TailListener listener;
+    private final long debounceMillis;
+    private final Map<Path, TailState> files = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a watcher with the default debounce interval
+     * @param listener Callback for appended lines
+     */
+    public FileTailWatcher(TailListener listener) throws IOException {
+        this(listener, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Creates a watcher
+     * @param listener Callback for appended lines
+     * @param debounceMillis Quiet period to wait for after an event before reading
+     */
+    public FileTailWatcher(TailListener listener, long debounceMillis) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        this.debounceMillis = Math.max(1, debounceMillis);
+        this.worker = new Thread(this::watchLoop, "file-tail-watcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Starts following a file
+     * @param file File to follow; it does not have to exist yet
+     * @param fromEnd true to skip existing content, false to emit it first
+     */
+    public void watch(Path file, boolean fromEnd) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path directory = absolute.getParent();
+        if (!directories.containsValue(directory)) {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                              StandardWatchEventKinds.ENTRY_MODIFY,
+                                              StandardWatchEventKinds.ENTRY_DELETE);
+            directories.put(key, directory);
+        }
+
+        TailState state = new TailState();
+        if (fromEnd && Files.exists(absolute)) {
+            BasicFileAttributes attrs = Files.readAttributes(absolute, BasicFileAttributes.class);
+            state.offset = attrs.size();
+            state.fileKey = attrs.fileKey();
+        }
+        files.put(absolute, state);
+        if (!fromEnd) {
+            synchronized (this) {
+                readNewData(absolute, state);
+            }
+        }
+    }
+
+    /**
+     * Stops following a file
+     */
+    public void unwatch(Path file) {
+        files.remove(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Stops the watcher thread
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        worker.interrupt();
+        watchService.close();
+    }
+
+    private void watchLoop() {
+        Set<Path> dirty = new HashSet<>();
+        try {
+            while (running) {
+                WatchKey key = watchService.take();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis * 10);
+
+                // Keep collecting until the burst goes quiet, but never wait forever
+                while (key != null) {
+                    collect(key, dirty);
+                    if (System.nanoTime() >= deadline) {
+                        break;
+                    }
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+
+                synchronized (this) {
+                    for (Path file : dirty) {
+                        TailState state = files.get(file);
+                        if (state == null) {
+                            continue;
+                        }
+                        // A failing listener must not stop the other files from being followed
+                        try {
+                            readNewData(file, state);
+                        } catch (RuntimeException e) {
+                            System.err.println("Tail listener failed for " + file + ": " + e);
+                        }
+                    }
+                }
+                dirty.clear();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closing
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> dirty) {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost; re-check every file
+                dirty.addAll(files.keySet());
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (files.containsKey(file)) {
+                dirty.add(file);
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Reads everything appended since the last offset and emits complete lines
+     */
+    private void readNewData(Path file, TailState state) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // Deleted or mid-rotation; pick it up again on the next create event
+            return;
+        }
+
+        if (state.fileKey != null && attrs.fileKey() != null && !state.fileKey.equals(attrs.fileKey())) {
+            state.reset();
+            listener.onRotated(file);
+        } else if (attrs.size() < state.offset) {
+            state.reset();
+            listener.onTruncated(file);
+        }
+        state.fileKey = attrs.fileKey();
+
+        List<String> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (true) {
+                readBuffer.clear();
+                int read = channel.read(readBuffer, state.offset);
+                if (read <= 0) {
+                    break;
+                }
+                state.offset += read;
+                readBuffer.flip();
+                splitLines(readBuffer, state, lines);
+            }
+        } catch (IOException e) {
+            System.err.println("Error tailing file: " + e.getMessage());
+        }
+
+        if (!lines.isEmpty()) {
+            listener.onLines(file, lines);
+        }
+    }
+
+    private static void splitLines(ByteBuffer data, TailState state, List<String> lines) {
+        while (data.hasRemaining()) {
+            byte b = data.get();
+            if (b == '\n') {
+                byte[] bytes = state.partial.toByteArray();
+                int length = bytes.length;
+                if (length > 0 && bytes[length - 1] == '\r') {
+                    length--;
+                }
+                lines.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+                state.partial.reset();
+            } else {
+                state.partial.write(b);
+            }
+        }
+    }
+
+    /**
+     * Per-file read position, identity and unterminated trailing line
+     */
+    private static class TailState {
+        long offset;
+        Object fileKey;
+        final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+
+        void reset() {
+            offset = 0;
+            partial.reset();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+
+/**
+ * Zero-copy copy, move and concatenate operations
+ * Bytes move between channels with FileChannel.transferTo, which lets the
+ * kernel use sendfile/copy_file_range instead of pulling data through the
+ * heap. Content is never decoded, so binary files are copied exactly.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class FileTransfer {
+
+    // Transfer in slices so progress is reported regularly on large files
+    private static final long TRANSFER_SLICE = 8L * 1024 * 1024;
+
+    /**
+     * Receives progress updates during a transfer
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(long bytesTransferred, long totalBytes);
+    }
+
+    private FileTransfer() {
+    }
+
+    /**
+     * Copies a file, replacing the target if it exists
+     * @param source File to copy
+     * @param target Destination file
+     * @param listener Progress callback, or null
+     * @return Number of bytes copied
+     */
+    public static long copy(Path source, Path target, ProgressListener listener) throws IOException {
+        return concatenate(List.of(source), target, listener);
+    }
+
+    /**
+     * Moves a file, using a rename when source and target share a file system
+     * and falling back to a zero-copy copy plus delete otherwise
+     * @param source File to move
+     * @param target Destination file
+     * @param listener Progress callback, or null
+     * @return Number of bytes moved
+     */
+    public static long move(Path source, Path target, ProgressListener listener) throws IOException {
+        long size = Files.size(source);
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (listener != null) {
+                listener.onProgress(size, size);
+            }
+            return size;
+        } catch (AtomicMoveNotSupportedException e) {
+            long copied = copy(source, target, listener);
+            Files.delete(source);
+            return copied;
+        }
+    }
+
+    /**
+     * Writes the sources one after another into the target
+     * @param sources Files to concatenate, in order
+     * @param target Destination file, replaced if it exists; must not be one of the sources
+     * @param listener Progress callback, or null
+     * @return Number of bytes written
+     * @throws FileSystemException if the target is one of the sources, which truncating would destroy
+     */
+    public static long concatenate(List<Path> sources, Path target, ProgressListener listener)
+            throws IOException {
+        boolean targetExists = Files.exists(target);
+        long total = 0;
+        for (Path source : sources) {
+            if (targetExists && Files.isSameFile(source, target)) {
+                throw new FileSystemException(source.toString(), target.toString(),
+                                              "Source and target are the same file");
+            }
+            total += Files.size(source);
+        }
+
+        long transferred = 0;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path source : sources) {
+                try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                    transferred = transfer(in, out, transferred, total, listener);
+                }
+            }
+        }
+        return transferred;
+    }
+
+    /**
+     * Transfers the whole input channel, looping because transferTo may move
+     * fewer bytes than requested
+     */
+    private static long transfer(FileChannel in, FileChannel out, long transferred, long total,
+                                 ProgressListener listener) throws IOException {
+        long size = in.size();
+        long position = 0;
+        while (position < size) {
+            long count = in.transferTo(position, Math.min(TRANSFER_SLICE, size - position), out);
+            if (count <= 0) {
+                break;
+            }
+            position += count;
+            transferred += count;
+            if (listener != null) {
+                listener.onProgress(transferred, total);
+            }
+        }
+        return transferred;
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Random;
+
+/**
+ * Compares FileTransfer.copy with the readFile/writeFile round trip
+ * Usage: java FileTransferBenchmark [sizeInMegabytes] [iterations]
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class FileTransferBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path dir = Files.createTempDirectory("transfer-bench");
+        Path source = dir.resolve("source.txt");
+        Path target = dir.resolve("target.txt");
+
+        // ASCII content so the text round trip is a fair comparison
+        byte[] block = new byte[1024 * 1024];
+        Random random = new Random(42);
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) ('a' + random.nextInt(26));
+        }
+        for (int i = 0; i < sizeMb; i++) {
+            Files.write(source, block, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        System.out.println("=== File Copy Benchmark (" + sizeMb + " MB, " + iterations + " runs) ===");
+        try {
+            // Warm up both paths once
+            FileTransfer.copy(source, target, null);
+            FileHandlingUtility.writeFile(target.toString(), FileHandlingUtility.readFile(source.toString()));
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                FileTransfer.copy(source, target, null);
+            }
+            report("FileTransfer.copy", start, sizeMb, iterations);
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                String content = FileHandlingUtility.readFile(source.toString());
+                FileHandlingUtility.writeFile(target.toString(), content);
+            }
+            report("readFile + writeFile", start, sizeMb, iterations);
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(target);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void report(String name, long start, int sizeMb, int iterations) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-22s %8.1f ms/op %10.1f MB/s%n",
+                          name, seconds * 1000 / iterations, sizeMb * iterations / seconds);
+    }
+}
@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy, chunked reading API used alongside FileHandlingUtility.readFile
+ * Offers a line stream, fixed-size byte chunks and positional byte-range reads.
+ * Decoding buffers are allocated once per reader and reused, so reading a line
+ * allocates nothing beyond the returned String.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class LazyFileReader {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // Large enough to hold any single encoded character
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    private LazyFileReader() {
+    }
+
+    /**
+     * Opens a lazy stream of UTF-8 lines
+     * The stream must be closed to release the underlying channel.
+     * @param file File to read
+     * @return Stream of lines without line terminators
+     */
+    public static Stream<String> lines(Path file) throws IOException {
+        return lines(file, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a lazy stream of lines
+     * @param file File to read
+     * @param charset Charset used to decode the file
+     * @param bufferSize Size of the reused read buffer in bytes
+     * @return Stream of lines without line terminators
+     */
+    public static Stream<String> lines(Path file, Charset charset, int bufferSize) throws IOException {
+        LineIterator iterator = new LineIterator(FileChannel.open(file, StandardOpenOption.READ),
+                                                 charset, bufferSize);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(iterator::close);
+    }
+
+    /**
+     * Reads the file in fixed-size chunks
+     * The same buffer is handed to the consumer for every chunk, flipped and
+     * ready to read; it must not be retained after the callback returns.
+     * @param file File to read
+     * @param chunkSize Size of each chunk in bytes
+     * @param consumer Callback receiving each chunk
+     * @return Total number of bytes read
+     */
+    public static long chunks(Path file, int chunkSize, Consumer<ByteBuffer> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                // Fill the whole chunk so every chunk but the last has chunkSize bytes
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                if (buffer.position() == 0) {
+                    break;
+                }
+                buffer.flip();
+                total += buffer.remaining();
+                consumer.accept(buffer);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Reads a byte range using positional reads
+     * @param file File to read
+     * @param position Offset of the first byte
+     * @param length Number of bytes to read
+     * @return Buffer holding the bytes read, shorter than length at end of file
+     */
+    public static ByteBuffer readRange(Path file, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readRange(channel, position, buffer);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Fills the buffer from the channel starting at the given position
+     * The channel position is not changed, so this is safe to call from
+     * several threads sharing one channel.
+     * @param channel Channel to read from
+     * @param position Offset of the first byte
+     * @param buffer Buffer to fill
+     * @return Number of bytes read
+     */
+    public static int readRange(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Line iterator over a channel with reused decode buffers
+     * Recognises \n, \r and \r\n as line terminators, like BufferedReader.
+     */
+    private static class LineIterator implements Iterator<String>, AutoCloseable {
+        private final FileChannel channel;
+        private final CharsetDecoder decoder;
+        private final ByteBuffer bytes;
+        private final CharBuffer chars;
+        private final StringBuilder line = new StringBuilder(128);
+        private String next;
+        private boolean endOfInput;
+        private boolean finished;
+        private boolean skipLineFeed;
+
+        LineIterator(FileChannel channel, Charset charset, int bufferSize) {
+            this.channel = channel;
+            this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            bufferSize = Math.max(bufferSize, MIN_BUFFER_SIZE);
+            this.bytes = ByteBuffer.allocateDirect(bufferSize);
+            this.chars = CharBuffer.allocate((int) Math.ceil(bufferSize * (double) decoder.maxCharsPerByte()));
+            this.chars.flip();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            next = null;
+            return result;
+        }
+
+        private String readLine() throws IOException {
+            line.setLength(0);
+            boolean sawData = false;
+
+            while (true) {
+                while (chars.hasRemaining()) {
+                    char c = chars.get();
+                    if (skipLineFeed) {
+                        skipLineFeed = false;
+                        if (c == '\n') {
+                            continue;
+                        }
+                    }
+                    if (c == '\n' || c == '\r') {
+                        skipLineFeed = c == '\r';
+                        return line.toString();
+                    }
+                    line.append(c);
+                    sawData = true;
+                }
+                if (!fill()) {
+                    return sawData ? line.toString() : null;
+                }
+            }
+        }
+
+        /**
+         * Decodes the next batch of characters, returning false at end of file
+         */
+        private boolean fill() throws IOException {
+            if (finished) {
+                return false;
+            }
+            chars.clear();
+            while (chars.position() == 0) {
+                if (!endOfInput && channel.read(bytes) < 0) {
+                    endOfInput = true;
+                }
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                bytes.compact();
+                if (endOfInput && result.isUnderflow()) {
+                    decoder.flush(chars);
+                    finished = true;
+                    break;
+                }
+            }
+            chars.flip();
+            return chars.hasRemaining();
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
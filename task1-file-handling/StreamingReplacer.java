@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Streaming find/replace engine used by FileHandlingUtility.modifyFile
+ * The source file is mapped window by window and matched byte by byte with a
+ * KMP automaton, so matches that straddle a window boundary are still found.
+ * Output goes to a temp file that is atomically renamed over the original.
+ * Memory use is bounded by the window size, not by the file size.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class StreamingReplacer {
+
+    public static final int DEFAULT_WINDOW_SIZE = 16 * 1024 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final byte[] pattern;
+    private final byte[] replacement;
+    private final int[] failure;
+    private final int windowSize;
+
+    /**
+     * Creates a replacer for UTF-8 text using the default window size
+     * @param oldText Text to replace (must not be empty)
+     * @param newText Replacement text
+     */
+    public StreamingReplacer(String oldText, String newText) {
+        this(oldText.getBytes(StandardCharsets.UTF_8),
+             newText.getBytes(StandardCharsets.UTF_8), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a replacer for raw byte patterns
+     * @param pattern Bytes to replace (must not be empty)
+     * @param replacement Replacement bytes
+     * @param windowSize Number of bytes mapped at a time
+     */
+    public StreamingReplacer(byte[] pattern, byte[] replacement, int windowSize) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("Search pattern must not be empty");
+        }
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.pattern = pattern.clone();
+        this.replacement = replacement.clone();
+        this.failure = buildFailureTable(this.pattern);
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Replaces every occurrence of the pattern in the file
+     * The original file is left untouched when nothing matches.
+     * @param file File to modify
+     * @return Number of replacements made
+     */
+    public long replace(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        long replacements = 0;
+
+        try {
+            copyPermissions(target, temp);
+            try (FileChannel in = FileChannel.open(target, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+
+                ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+                long size = in.size();
+                long position = 0;
+                int matched = 0;
+
+                while (position < size) {
+                    long length = Math.min(windowSize, size - position);
+                    MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                    while (window.hasRemaining()) {
+                        byte b = window.get();
+
+                        // Fall back along the failure links, emitting the bytes that
+                        // can no longer be part of a match
+                        while (matched > 0 && pattern[matched] != b) {
+                            int next = failure[matched - 1];
+                            put(out, output, pattern, 0, matched - next);
+                            matched = next;
+                        }
+
+                        if (pattern[matched] == b) {
+                            matched++;
+                            if (matched == pattern.length) {
+                                put(out, output, replacement, 0, replacement.length);
+                                replacements++;
+                                matched = 0;
+                            }
+                        } else {
+                            put(out, output, b);
+                        }
+                    }
+                    position += length;
+                }
+
+                // Trailing partial match is plain text
+                put(out, output, pattern, 0, matched);
+                drain(out, output);
+
+                if (replacements > 0) {
+                    out.force(false);
+                }
+            }
+
+            if (replacements > 0) {
+                moveAtomically(temp, target);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return replacements;
+    }
+
+    /**
+     * Builds the KMP failure table for the pattern
+     */
+    private static int[] buildFailureTable(byte[] pattern) {
+        int[] table = new int[pattern.length];
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = table[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            table[i] = k;
+        }
+        return table;
+    }
+
+    private static void put(FileChannel out, ByteBuffer output, byte b) throws IOException {
+        if (!output.hasRemaining()) {
+            drain(out, output);
+        }
+        output.put(b);
+    }
+
+    private static void put(FileChannel out, ByteBuffer output, byte[] bytes, int offset, int length)
+            throws IOException {
+        while (length > 0) {
+            if (!output.hasRemaining()) {
+                drain(out, output);
+            }
+            int chunk = Math.min(length, output.remaining());
+            output.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer output) throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            out.write(output);
+        }
+        output.clear();
+    }
+
+    /**
+     * Keeps the original file mode, since temp files are created owner-only
+     */
+    private static void copyPermissions(Path source, Path target) throws IOException {
+        if (Files.getFileStore(source).supportsFileAttributeView("posix")) {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        }
+    }
+
+    /**
+     * Renames the temp file over the target, falling back to a plain replace
+     * on file systems without atomic moves
+     */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Pooled, asynchronous HTTP engine behind RestApiClient
+ * One shared java.net.http.HttpClient keeps connections alive between calls
+ * and multiplexes requests over HTTP/2 where the server supports it. Every
+ * request has connect and read timeouts, and batch calls cap the number of
+ * requests in flight per host.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class HttpEngine {
+
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    public static final int DEFAULT_MAX_PER_HOST = 8;
+    private static final String USER_AGENT = "Java REST Client";
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int maxPerHost;
+    private final RequestPipeline pipeline;
+    private final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an engine with default timeouts, per-host limit and resilience pipeline
+     */
+    public HttpEngine() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT, DEFAULT_MAX_PER_HOST, new RequestPipeline());
+    }
+
+    /**
+     * Creates an engine without retries, rate limiting or circuit breaking
+     * @param connectTimeout Time allowed to establish a connection
+     * @param requestTimeout Time allowed for the response to arrive
+     * @param maxPerHost Maximum concurrent batch requests per host
+     */
+    public HttpEngine(Duration connectTimeout, Duration requestTimeout, int maxPerHost) {
+        this(connectTimeout, requestTimeout, maxPerHost, null);
+    }
+
+    /**
+     * Creates an engine
+     * @param connectTimeout Time allowed to establish a connection
+     * @param requestTimeout Time allowed for the response to arrive
+     * @param maxPerHost Maximum concurrent batch requests per host
+     * @param pipeline Resilience stages applied to every request, or null for none
+     */
+    public HttpEngine(Duration connectTimeout, Duration requestTimeout, int maxPerHost,
+                      RequestPipeline pipeline) {
+        if (maxPerHost <= 0) {
+            throw new IllegalArgumentException("Per-host limit must be positive");
+        }
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.requestTimeout = requestTimeout;
+        this.maxPerHost = maxPerHost;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Resilience pipeline in use, or null if requests go straight to the network
+     */
+    public RequestPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Builds a GET request with the client's headers and timeout
+     * @param url URL to request
+     * @return Request builder that callers may add headers to
+     */
+    public HttpRequest.Builder newGet(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+            .timeout(requestTimeout)
+            .header("User-Agent", USER_AGENT)
+            .GET();
+    }
+
+    /**
+     * Sends a request without blocking the caller
+     * Goes through the resilience pipeline when one is configured; only
+     * idempotent methods are retried.
+     * @param request Request to send
+     * @param bodyHandler How to consume the response body
+     * @return Future completed with the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> bodyHandler) {
+        if (pipeline == null) {
+            return client.sendAsync(request, bodyHandler);
+        }
+        boolean idempotent = IDEMPOTENT_METHODS.contains(request.method());
+        return pipeline.execute(request.uri().getAuthority(), idempotent,
+                                () -> client.sendAsync(request, bodyHandler));
+    }
+
+    /**
+     * Issues a GET without blocking the caller
+     * @param url URL to request
+     * @return Future completed with the response
+     */
+    public CompletableFuture<HttpResponse<String>> getAsync(String url) {
+        return sendAsync(newGet(url).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Issues GETs for all URLs concurrently, with at most maxPerHost in flight per host
+     * @param urls URLs to request
+     * @return One future per URL, in the same order
+     */
+    public List<CompletableFuture<HttpResponse<String>>> getAll(List<String> urls) {
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            URI uri;
+            try {
+                uri = URI.create(url);
+            } catch (IllegalArgumentException e) {
+                // A malformed URL fails its own entry, not the whole batch
+                futures.add(CompletableFuture.failedFuture(e));
+                continue;
+            }
+            futures.add(limited(uri.getAuthority(), () -> getAsync(url)));
+        }
+        return futures;
+    }
+
+    /**
+     * Runs an async call once a per-host slot is free, releasing the slot when it completes
+     * @param host Host the call goes to
+     * @param call Starts the call
+     * @return Future completed with the call's result
+     */
+    public <T> CompletableFuture<T> limited(String host, Supplier<CompletableFuture<T>> call) {
+        HostLimiter limiter = limiters.computeIfAbsent(host == null ? "" : host, h -> new HostLimiter(maxPerHost));
+        CompletableFuture<T> result = new CompletableFuture<>();
+        limiter.submit(() -> {
+            CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (RuntimeException e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+            started.whenComplete((value, error) -> {
+                limiter.release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Counts in-flight requests for one host and queues the rest without
+     * blocking any thread
+     * Released permits are handed to waiting tasks in a loop by one thread at
+     * a time, so calls that complete synchronously do not recurse through
+     * release() and grow the stack.
+     */
+    private static class HostLimiter {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int available;
+        private boolean draining;
+
+        HostLimiter(int permits) {
+            this.available = permits;
+        }
+
+        void submit(Runnable task) {
+            synchronized (this) {
+                if (available == 0) {
+                    waiting.add(task);
+                    return;
+                }
+                available--;
+            }
+            task.run();
+        }
+
+        void release() {
+            synchronized (this) {
+                available++;
+                if (draining) {
+                    // The draining thread picks the permit up on its next pass
+                    return;
+                }
+                draining = true;
+            }
+            while (true) {
+                Runnable next;
+                synchronized (this) {
+                    if (available == 0 || waiting.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    available--;
+                    next = waiting.poll();
+                }
+                next.run();
+            }
+        }
+    }
+}
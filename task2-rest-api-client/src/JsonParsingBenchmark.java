@@ -0,0 +1,97 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Compares the org.json DOM path with the streaming JsonPullParser path
+ * on a synthetic /posts payload. Reports time and bytes allocated per parse.
+ * Usage: java JsonParsingBenchmark [posts] [iterations]
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class JsonParsingBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int postCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        byte[] payload = buildPayload(postCount);
+
+        System.out.println("=== JSON Parsing Benchmark (" + postCount + " posts, "
+            + payload.length / 1024 + " KB, " + iterations + " runs) ===");
+
+        // Warm up both paths
+        for (int i = 0; i < 3; i++) {
+            parseWithOrgJson(payload);
+            parseWithPullParser(payload);
+        }
+
+        run("org.json (buffer + DOM)", iterations, () -> parseWithOrgJson(payload));
+        run("JsonPullParser (stream)", iterations, () -> parseWithPullParser(payload));
+    }
+
+    /**
+     * The original makeGetRequest + JSONArray path
+     */
+    static long parseWithOrgJson(byte[] payload) throws IOException {
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8));
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            response.append(line);
+        }
+        JSONArray posts = new JSONArray(response.toString());
+        long checksum = 0;
+        for (int i = 0; i < posts.length(); i++) {
+            JSONObject post = posts.getJSONObject(i);
+            checksum += post.getInt("id") + post.getString("title").length();
+        }
+        return checksum;
+    }
+
+    static long parseWithPullParser(byte[] payload) throws IOException {
+        long[] checksum = {0};
+        JsonPullParser parser = new JsonPullParser(new ByteArrayInputStream(payload));
+        JsonRecords.forEachPost(parser, post -> checksum[0] += post.getId() + post.getTitle().length());
+        return checksum[0];
+    }
+
+    private static void run(String name, int iterations, JsonTask task) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += task.run();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / iterations;
+        long allocated = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / iterations;
+
+        System.out.printf("%-26s %8.1f ms/op %10.1f MB allocated/op  (checksum %d)%n",
+                          name, millis, allocated / (1024.0 * 1024.0), checksum);
+    }
+
+    private static byte[] buildPayload(int postCount) {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 1; i <= postCount; i++) {
+            json.append("  {\n    \"userId\": ").append(i % 10 + 1)
+                .append(",\n    \"id\": ").append(i)
+                .append(",\n    \"title\": \"post title number ").append(i)
+                .append("\",\n    \"body\": \"quia et suscipit\\nsuscipit recusandae consequuntur expedita et cum")
+                .append(" reprehenderit molestiae ut ut quas totam\"\n  }")
+                .append(i < postCount ? ",\n" : "\n");
+        }
+        return json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface JsonTask {
+        long run() throws IOException;
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Typed JSONPlaceholder records decoded with JsonPullParser
+ * Unknown fields are skipped, so only the fields the client displays are kept.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class JsonRecords {
+
+    private JsonRecords() {
+    }
+
+    /**
+     * Streams the elements of a JSON array of posts to the consumer one at a time
+     * @return Number of posts read
+     */
+    public static int forEachPost(JsonPullParser parser, Consumer<Post> consumer) throws IOException {
+        int count = 0;
+        parser.beginArray();
+        while (parser.hasNext()) {
+            consumer.accept(readPost(parser));
+            count++;
+        }
+        parser.endArray();
+        return count;
+    }
+
+    /**
+     * Streams the elements of a JSON array of todos to the consumer one at a time
+     * @return Number of todos read
+     */
+    public static int forEachTodo(JsonPullParser parser, Consumer<Todo> consumer) throws IOException {
+        int count = 0;
+        parser.beginArray();
+        while (parser.hasNext()) {
+            consumer.accept(readTodo(parser));
+            count++;
+        }
+        parser.endArray();
+        return count;
+    }
+
+    /**
+     * Reads a whole array of posts
+     */
+    public static List<Post> readPosts(JsonPullParser parser) throws IOException {
+        List<Post> posts = new ArrayList<>();
+        forEachPost(parser, posts::add);
+        return posts;
+    }
+
+    /**
+     * Reads a whole array of todos
+     */
+    public static List<Todo> readTodos(JsonPullParser parser) throws IOException {
+        List<Todo> todos = new ArrayList<>();
+        forEachTodo(parser, todos::add);
+        return todos;
+    }
+
+    public static Post readPost(JsonPullParser parser) throws IOException {
+        Post post = new Post();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "id":
+                    post.id = parser.nextInt();
+                    break;
+                case "userId":
+                    post.userId = parser.nextInt();
+                    break;
+                case "title":
+                    post.title = parser.nextString();
+                    break;
+                case "body":
+                    post.body = parser.nextString();
+                    break;
+                default:
+                    parser.skipValue();
+            }
+        }
+        parser.endObject();
+        return post;
+    }
+
+    public static Todo readTodo(JsonPullParser parser) throws IOException {
+        Todo todo = new Todo();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "id":
+                    todo.id = parser.nextInt();
+                    break;
+                case "userId":
+                    todo.userId = parser.nextInt();
+                    break;
+                case "title":
+                    todo.title = parser.nextString();
+                    break;
+                case "completed":
+                    todo.completed = parser.nextBoolean();
+                    break;
+                default:
+                    parser.skipValue();
+            }
+        }
+        parser.endObject();
+        return todo;
+    }
+
+    public static User readUser(JsonPullParser parser) throws IOException {
+        User user = new User();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "id":
+                    user.id = parser.nextInt();
+                    break;
+                case "name":
+                    user.name = parser.nextString();
+                    break;
+                case "username":
+                    user.username = parser.nextString();
+                    break;
+                case "email":
+                    user.email = parser.nextString();
+                    break;
+                case "phone":
+                    user.phone = parser.nextString();
+                    break;
+                case "website":
+                    user.website = parser.nextString();
+                    break;
+                case "address":
+                    readAddress(parser, user);
+                    break;
+                case "company":
+                    readCompany(parser, user);
+                    break;
+                default:
+                    parser.skipValue();
+            }
+        }
+        parser.endObject();
+        return user;
+    }
+
+    private static void readAddress(JsonPullParser parser, User user) throws IOException {
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "city":
+                    user.city = parser.nextString();
+                    break;
+                case "zipcode":
+                    user.zipcode = parser.nextString();
+                    break;
+                default:
+                    parser.skipValue();
+            }
+        }
+        parser.endObject();
+    }
+
+    private static void readCompany(JsonPullParser parser, User user) throws IOException {
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "name":
+                    user.companyName = parser.nextString();
+                    break;
+                case "catchPhrase":
+                    user.catchPhrase = parser.nextString();
+                    break;
+                default:
+                    parser.skipValue();
+            }
+        }
+        parser.endObject();
+    }
+
+    /**
+     * A post from /posts
+     */
+    public static class Post {
+        int id;
+        int userId;
+        String title;
+        String body;
+
+        public int getId() {
+            return id;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * A todo from /todos
+     */
+    public static class Todo {
+        int id;
+        int userId;
+        String title;
+        boolean completed;
+
+        public int getId() {
+            return id;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+    }
+
+    /**
+     * A user from /users, with the nested address and company fields flattened
+     */
+    public static class User {
+        int id;
+        String name;
+        String username;
+        String email;
+        String phone;
+        String website;
+        String city;
+        String zipcode;
+        String companyName;
+        String catchPhrase;
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public String getWebsite() {
+            return website;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public String getZipcode() {
+            return zipcode;
+        }
+
+        public String getCompanyName() {
+            return companyName;
+        }
+
+        public String getCatchPhrase() {
+            return catchPhrase;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Walks a paginated list endpoint (_page/_limit) as one stream of records
+ * Up to prefetchDepth pages are requested ahead of the consumer, so the next
+ * page is usually ready by the time the current one is used up, while at most
+ * prefetchDepth + 1 pages are ever held in memory. The Flow.Publisher view adds
+ * subscriber-driven backpressure on top.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class PagedFetcher<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int DEFAULT_PREFETCH_DEPTH = 2;
+
+    private final HttpEngine engine;
+    private final String url;
+    private final int pageSize;
+    private final int prefetchDepth;
+    private final JsonPullParser.Handler<List<T>> pageParser;
+    private final Executor parseExecutor;
+
+    /**
+     * Creates a fetcher
+     * @param engine Engine used for page requests
+     * @param url Collection URL, optionally with its own query parameters
+     * @param pageSize Records per page (_limit)
+     * @param prefetchDepth Pages requested ahead of the consumer
+     * @param pageParser Decodes one page's JSON array
+     */
+    public PagedFetcher(HttpEngine engine, String url, int pageSize, int prefetchDepth,
+                        JsonPullParser.Handler<List<T>> pageParser) {
+        if (pageSize <= 0 || prefetchDepth <= 0) {
+            throw new IllegalArgumentException("Page size and prefetch depth must be positive");
+        }
+        this.engine = engine;
+        this.url = url;
+        this.pageSize = pageSize;
+        this.prefetchDepth = prefetchDepth;
+        this.pageParser = pageParser;
+        this.parseExecutor = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Fetcher for /posts
+     */
+    public static PagedFetcher<JsonRecords.Post> posts(HttpEngine engine, String baseUrl,
+                                                       int pageSize, int prefetchDepth) {
+        return new PagedFetcher<>(engine, baseUrl + "/posts", pageSize, prefetchDepth, JsonRecords::readPosts);
+    }
+
+    /**
+     * Fetcher for /todos of one user
+     */
+    public static PagedFetcher<JsonRecords.Todo> todos(HttpEngine engine, String baseUrl, int userId,
+                                                       int pageSize, int prefetchDepth) {
+        return new PagedFetcher<>(engine, baseUrl + "/todos?userId=" + userId, pageSize, prefetchDepth,
+                                  JsonRecords::readTodos);
+    }
+
+    /**
+     * Iterates every record of the collection, fetching pages lazily
+     * Network and parse errors surface as UncheckedIOException from hasNext.
+     */
+    public Iterator<T> iterator() {
+        return new PageIterator();
+    }
+
+    /**
+     * Publishes every record to a subscriber, honouring its demand
+     * Each subscription walks the collection independently. The producer
+     * blocks once bufferSize records are waiting for the subscriber.
+     * @param bufferSize Records buffered ahead of the subscriber's demand
+     */
+    public Flow.Publisher<T> publisher(int bufferSize) {
+        return subscriber -> {
+            SubmissionPublisher<T> publisher = new SubmissionPublisher<>(parseExecutor, bufferSize);
+            publisher.subscribe(subscriber);
+            Thread producer = new Thread(() -> {
+                try {
+                    Iterator<T> records = iterator();
+                    while (records.hasNext() && publisher.getNumberOfSubscribers() > 0) {
+                        publisher.submit(records.next());
+                    }
+                    publisher.close();
+                } catch (RuntimeException e) {
+                    publisher.closeExceptionally(e);
+                }
+            }, "paged-fetcher");
+            // An abandoned subscription must not keep the JVM alive
+            producer.setDaemon(true);
+            producer.start();
+        };
+    }
+
+    private String pageUrl(int page) {
+        return url + (url.contains("?") ? "&" : "?") + "_page=" + page + "&_limit=" + pageSize;
+    }
+
+    private Page<T> fetchPage(int page) {
+        CompletableFuture<HttpResponse<InputStream>> response =
+            engine.sendAsync(engine.newGet(pageUrl(page)).build(), HttpResponse.BodyHandlers.ofInputStream());
+        return new Page<>(response, response.thenApplyAsync(this::parsePage, parseExecutor));
+    }
+
+    private List<T> parsePage(HttpResponse<InputStream> response) {
+        try (JsonPullParser parser = new JsonPullParser(response.body())) {
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP Error: " + response.statusCode());
+            }
+            return pageParser.handle(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Keeps a window of in-flight page requests ahead of the current page
+     */
+    private class PageIterator implements Iterator<T> {
+        private final Deque<Page<T>> window = new ArrayDeque<>();
+        private Iterator<T> current = Collections.emptyIterator();
+        private int nextPage = 1;
+        private boolean lastPageSeen;
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (lastPageSeen) {
+                    return false;
+                }
+                fillWindow();
+                List<T> page = await(window.removeFirst());
+                if (page.size() < pageSize) {
+                    // Short page: the collection ends here, drop speculative requests
+                    lastPageSeen = true;
+                    cancelWindow();
+                }
+                current = page.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T record = current.next();
+            if (!lastPageSeen) {
+                fillWindow();
+            }
+            return record;
+        }
+
+        private void fillWindow() {
+            while (window.size() < prefetchDepth) {
+                window.addLast(fetchPage(nextPage++));
+            }
+        }
+
+        private void cancelWindow() {
+            window.forEach(Page::cancel);
+            window.clear();
+        }
+
+        private List<T> await(Page<T> page) {
+            try {
+                return page.records.join();
+            } catch (CompletionException e) {
+                cancelWindow();
+                lastPageSeen = true;
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw (UncheckedIOException) cause;
+                }
+                throw new UncheckedIOException(new IOException(cause));
+            }
+        }
+    }
+
+    /**
+     * A page request: the raw response and the records parsed from it
+     */
+    private static class Page<T> {
+        final CompletableFuture<HttpResponse<InputStream>> response;
+        final CompletableFuture<List<T>> records;
+
+        Page(CompletableFuture<HttpResponse<InputStream>> response, CompletableFuture<List<T>> records) {
+            this.response = response;
+            this.records = records;
+        }
+
+        /**
+         * Abandons the page. Cancelling the parse stage does not reach the
+         * request, so the response body is closed whenever it arrives, which
+         * drains the stream and releases the connection.
+         */
+        void cancel() {
+            records.cancel(true);
+            response.thenAccept(r -> {
+                try {
+                    r.body().close();
+                } catch (IOException e) {
+                    // Nothing left to release
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight deduplication of identical requests
+ * Concurrent callers asking for the same key share one in-flight call and all
+ * receive its result; the key is forgotten as soon as the call completes, so
+ * later callers start a fresh one. MicroBatcher extends the idea to different
+ * keys that can be served by one multi-key request.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class RequestCoalescer {
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    /**
+     * Runs the call for a key unless one is already in flight, in which case
+     * the caller joins it
+     * @param key Identity of the request, e.g. its URL
+     * @param call Starts the request
+     * @return Future shared by every caller of the same in-flight key
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> mine = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            joined.increment();
+            return existing;
+        }
+        started.increment();
+
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            // Remove before completing so callers woken by the result never join a finished flight
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine;
+    }
+
+    /**
+     * Calls that went to the network
+     */
+    public long getStartedCount() {
+        return started.sum();
+    }
+
+    /**
+     * Calls served by joining one already in flight
+     */
+    public long getJoinedCount() {
+        return joined.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Coalescer: " + started.sum() + " started, " + joined.sum() + " joined in-flight";
+    }
+
+    /**
+     * Collects keys for a short window and loads them with one multi-key call
+     * A batch is dispatched when the window closes or when it reaches maxBatchSize,
+     * whichever comes first. Repeated keys within a window share one future.
+     */
+    public static class MicroBatcher<K, V> {
+
+        public static final Duration DEFAULT_WINDOW = Duration.ofMillis(5);
+        public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+        private final Function<List<K>, CompletableFuture<Map<K, V>>> loader;
+        private final long windowNanos;
+        private final int maxBatchSize;
+        private Batch<K, V> pending;
+
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder keys = new LongAdder();
+
+        /**
+         * Creates a batcher with the default window and batch size
+         */
+        public MicroBatcher(Function<List<K>, CompletableFuture<Map<K, V>>> loader) {
+            this(loader, DEFAULT_WINDOW, DEFAULT_MAX_BATCH_SIZE);
+        }
+
+        /**
+         * Creates a batcher
+         * @param loader Loads a batch of keys; keys missing from its map complete with null
+         * @param window How long to collect keys after the first one arrives
+         * @param maxBatchSize Keys that trigger an immediate dispatch
+         */
+        public MicroBatcher(Function<List<K>, CompletableFuture<Map<K, V>>> loader,
+                            Duration window, int maxBatchSize) {
+            if (maxBatchSize <= 0) {
+                throw new IllegalArgumentException("Batch size must be positive");
+            }
+            this.loader = loader;
+            this.windowNanos = window.toNanos();
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        /**
+         * Queues a key for the current batch
+         * @return Future completed with the key's value once its batch is loaded
+         */
+        public CompletableFuture<V> load(K key) {
+            Batch<K, V> full = null;
+            CompletableFuture<V> future;
+            synchronized (this) {
+                if (pending == null) {
+                    Batch<K, V> batch = new Batch<>();
+                    pending = batch;
+                    CompletableFuture.delayedExecutor(windowNanos, TimeUnit.NANOSECONDS)
+                        .execute(() -> dispatch(take(batch)));
+                }
+                future = pending.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+                if (pending.futures.size() >= maxBatchSize) {
+                    full = pending;
+                    pending = null;
+                }
+            }
+            if (full != null) {
+                dispatch(full);
+            }
+            return future;
+        }
+
+        public long getBatchCount() {
+            return batches.sum();
+        }
+
+        public long getKeyCount() {
+            return keys.sum();
+        }
+
+        @Override
+        public String toString() {
+            long batchCount = batches.sum();
+            return "Batcher: " + keys.sum() + " keys in " + batchCount + " batches"
+                + (batchCount > 0 ? String.format(" (%.1f per batch)", (double) keys.sum() / batchCount) : "");
+        }
+
+        /**
+         * Claims the batch when its window closes, unless it was already dispatched as full
+         */
+        private synchronized Batch<K, V> take(Batch<K, V> batch) {
+            if (pending != batch) {
+                return null;
+            }
+            pending = null;
+            return batch;
+        }
+
+        private void dispatch(Batch<K, V> batch) {
+            if (batch == null) {
+                return;
+            }
+            List<K> batchKeys = new ArrayList<>(batch.futures.keySet());
+            batches.increment();
+            keys.add(batchKeys.size());
+
+            CompletableFuture<Map<K, V>> loaded;
+            try {
+                loaded = loader.apply(batchKeys);
+            } catch (RuntimeException e) {
+                loaded = CompletableFuture.failedFuture(e);
+            }
+            loaded.whenComplete((values, error) -> batch.futures.forEach((key, future) -> {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(values.get(key));
+                }
+            }));
+        }
+
+        private static class Batch<K, V> {
+            final Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+        }
+    }
+}
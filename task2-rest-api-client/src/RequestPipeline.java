@@ -0,0 +1,355 @@
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Resilience stages wrapped around every HttpEngine call
+ * Each attempt first takes a token from a token-bucket rate limiter, then
+ * passes a per-host circuit breaker, then goes to the network. Idempotent
+ * requests that fail with an I/O error, 429 or 5xx are retried with
+ * exponential backoff and full jitter. Every stage records outcome counts and
+ * a latency histogram.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class RequestPipeline {
+
+    private final RetryPolicy retryPolicy;
+    private final RateLimiter rateLimiter;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final int breakerFailureThreshold;
+    private final Duration breakerOpenDuration;
+
+    private final StageMetrics retryMetrics = new StageMetrics("retry");
+    private final StageMetrics rateLimitMetrics = new StageMetrics("rate-limit");
+    private final StageMetrics breakerMetrics = new StageMetrics("circuit-breaker");
+
+    /**
+     * Creates a pipeline with defaults suited to a public demo API:
+     * 3 attempts, 20 requests/second, breaker opening after 5 consecutive failures for 30s
+     */
+    public RequestPipeline() {
+        this(new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(2)), 20, 20, 5, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Creates a pipeline
+     * @param retryPolicy Retry settings for idempotent requests
+     * @param permitsPerSecond Sustained request rate
+     * @param burst Maximum tokens the bucket can hold
+     * @param breakerFailureThreshold Consecutive failures that open a host's breaker
+     * @param breakerOpenDuration How long an open breaker rejects calls before a trial
+     */
+    public RequestPipeline(RetryPolicy retryPolicy, double permitsPerSecond, int burst,
+                           int breakerFailureThreshold, Duration breakerOpenDuration) {
+        this.retryPolicy = retryPolicy;
+        this.rateLimiter = new RateLimiter(permitsPerSecond, burst);
+        this.breakerFailureThreshold = breakerFailureThreshold;
+        this.breakerOpenDuration = breakerOpenDuration;
+    }
+
+    /**
+     * Runs a call through the rate limiter, breaker and (if idempotent) retries
+     * @param host Host the call goes to, used to pick the circuit breaker
+     * @param idempotent true if the call may safely be repeated
+     * @param call Starts one attempt
+     * @return Future completed with the final attempt's response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> execute(String host, boolean idempotent,
+                                                          Supplier<CompletableFuture<HttpResponse<T>>> call) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(host == null ? "" : host,
+            h -> new CircuitBreaker(breakerFailureThreshold, breakerOpenDuration));
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        attempt(breaker, idempotent ? retryPolicy.maxAttempts : 1, 1, call, result);
+        result.whenComplete((response, error) ->
+            retryMetrics.record(error == null && !isFailure(response), System.nanoTime() - start));
+        return result;
+    }
+
+    public StageMetrics getRetryMetrics() {
+        return retryMetrics;
+    }
+
+    public StageMetrics getRateLimitMetrics() {
+        return rateLimitMetrics;
+    }
+
+    public StageMetrics getBreakerMetrics() {
+        return breakerMetrics;
+    }
+
+    /**
+     * State of the breaker for a host, or CLOSED if it has not been called yet
+     */
+    public CircuitBreaker.State getBreakerState(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.getState();
+    }
+
+    @Override
+    public String toString() {
+        return retryMetrics + "\n" + rateLimitMetrics + "\n" + breakerMetrics;
+    }
+
+    private <T> void attempt(CircuitBreaker breaker, int maxAttempts, int attemptNumber,
+                             Supplier<CompletableFuture<HttpResponse<T>>> call,
+                             CompletableFuture<HttpResponse<T>> result) {
+        long waitNanos = rateLimiter.reserve();
+        rateLimitMetrics.record(true, waitNanos);
+        Executor executor = waitNanos > 0
+            ? CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS)
+            : Runnable::run;
+
+        executor.execute(() -> {
+            if (!breaker.tryAcquire()) {
+                breakerMetrics.reject();
+                result.completeExceptionally(new CircuitOpenException("Circuit open, request rejected"));
+                return;
+            }
+
+            long start = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> started;
+            try {
+                started = call.get();
+            } catch (RuntimeException e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+
+            started.whenComplete((response, error) -> {
+                boolean failed = error != null || isFailure(response);
+                breakerMetrics.record(!failed, System.nanoTime() - start);
+                if (failed) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+
+                if (failed && attemptNumber < maxAttempts) {
+                    discard(response);
+                    long backoff = retryPolicy.backoffNanos(attemptNumber);
+                    CompletableFuture.delayedExecutor(backoff, TimeUnit.NANOSECONDS).execute(
+                        () -> attempt(breaker, maxAttempts, attemptNumber + 1, call, result));
+                } else if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+    }
+
+    /**
+     * Releases the body of a response that is about to be retried
+     */
+    private static void discard(HttpResponse<?> response) {
+        if (response != null && response.body() instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) response.body()).close();
+            } catch (Exception e) {
+                // Nothing useful to do; the attempt is being replaced anyway
+            }
+        }
+    }
+
+    /**
+     * Responses that signal an overloaded or failing upstream
+     */
+    private static boolean isFailure(HttpResponse<?> response) {
+        int status = response.statusCode();
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * Raised when a host's circuit breaker is open
+     */
+    public static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Exponential backoff with full jitter: sleep a random time in [0, min(max, base * 2^n))
+     */
+    public static class RetryPolicy {
+        final int maxAttempts;
+        private final long baseNanos;
+        private final long maxNanos;
+
+        public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException("At least one attempt is required");
+            }
+            this.maxAttempts = maxAttempts;
+            this.baseNanos = baseDelay.toNanos();
+            this.maxNanos = maxDelay.toNanos();
+        }
+
+        long backoffNanos(int attemptNumber) {
+            long ceiling = Math.min(maxNanos, baseNanos << Math.min(attemptNumber - 1, 30));
+            return ThreadLocalRandom.current().nextLong(Math.max(ceiling, 1));
+        }
+    }
+
+    /**
+     * Token bucket; callers reserve a token and wait out any deficit
+     */
+    static class RateLimiter {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        RateLimiter(double permitsPerSecond, int burst) {
+            this.tokensPerNano = permitsPerSecond / 1e9;
+            this.capacity = Math.max(1, burst);
+            this.tokens = capacity;
+        }
+
+        /**
+         * Takes one token, borrowing against future refills if the bucket is empty
+         * @return Nanoseconds to wait before using the token
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+    }
+
+    /**
+     * Per-host breaker: opens after consecutive failures, lets a single trial
+     * through after the open period, and closes again when the trial succeeds
+     */
+    public static class CircuitBreaker {
+
+        public enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final int failureThreshold;
+        private final long openNanos;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        CircuitBreaker(int failureThreshold, Duration openDuration) {
+            this.failureThreshold = failureThreshold;
+            this.openNanos = openDuration.toNanos();
+        }
+
+        synchronized boolean tryAcquire() {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.HALF_OPEN && !trialInFlight) {
+                trialInFlight = true;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            state = State.CLOSED;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+                trialInFlight = false;
+            }
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+    }
+
+    /**
+     * Outcome counters and a log2-bucketed latency histogram for one stage
+     * Bucket i holds latencies in [2^i, 2^(i+1)) microseconds.
+     */
+    public static class StageMetrics {
+        private static final int BUCKETS = 32;
+
+        private final String name;
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejections = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        StageMetrics(String name) {
+            this.name = name;
+        }
+
+        void record(boolean success, long latencyNanos) {
+            (success ? successes : failures).increment();
+            long micros = Math.max(1, latencyNanos / 1000);
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros)));
+        }
+
+        void reject() {
+            rejections.increment();
+        }
+
+        public long getSuccessCount() {
+            return successes.sum();
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        public long getRejectionCount() {
+            return rejections.sum();
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, in milliseconds
+         * @param percentile Value between 0 and 100
+         */
+        public double getPercentileMillis(double percentile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += histogram.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank) {
+                    return (1L << (i + 1)) / 1000.0;
+                }
+            }
+            return (1L << BUCKETS) / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-16s ok=%d failed=%d rejected=%d p50<=%.1fms p99<=%.1fms",
+                                 name, getSuccessCount(), getFailureCount(), getRejectionCount(),
+                                 getPercentileMillis(50), getPercentileMillis(99));
+        }
+    }
+}
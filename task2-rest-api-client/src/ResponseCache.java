@@ -0,0 +1,395 @@
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process GET response cache in front of HttpEngine
+ * Entries are bounded by count and by approximate size, evicted in LRU order,
+ * and expire after a per-entry TTL (Cache-Control max-age, or the default).
+ * Expired entries that carry an ETag or Last-Modified are revalidated with a
+ * conditional GET, so an unchanged resource costs a 304 instead of a full body.
+ * Concurrent misses for the same URL are coalesced into one request.
+ * An optional disk tier keeps entries across restarts.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class ResponseCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(60);
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    private final HttpEngine engine;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long defaultTtlMillis;
+    private final Path diskDirectory;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    /**
+     * Creates a memory-only cache with default limits
+     */
+    public ResponseCache(HttpEngine engine) {
+        this(engine, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, DEFAULT_TTL, null);
+    }
+
+    /**
+     * Creates a cache
+     * @param engine Engine used for misses and revalidation
+     * @param maxEntries Maximum number of cached responses
+     * @param maxBytes Maximum approximate size of all cached bodies
+     * @param defaultTtl TTL for responses without Cache-Control max-age
+     * @param diskDirectory Directory for the persistent tier, or null for memory only;
+     *                      disk entries outlive memory eviction and are removed by clear()
+     */
+    public ResponseCache(HttpEngine engine, int maxEntries, long maxBytes, Duration defaultTtl,
+                         Path diskDirectory) {
+        this.engine = engine;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.defaultTtlMillis = defaultTtl.toMillis();
+        this.diskDirectory = diskDirectory;
+        if (diskDirectory != null) {
+            try {
+                Files.createDirectories(diskDirectory);
+            } catch (IOException e) {
+                System.err.println("Error creating cache directory: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the response for a URL, from cache when fresh
+     * @param url URL to fetch
+     * @return Status code and body; the body is only set for 200 responses
+     */
+    public Result get(String url) {
+        return getAsync(url).join();
+    }
+
+    /**
+     * Returns the response for a URL without waiting for the network
+     * @param url URL to fetch
+     * @return Future completed with the status code and body; already complete on a fresh hit
+     */
+    public CompletableFuture<Result> getAsync(String url) {
+        Entry entry = lookup(url);
+
+        if (entry != null && System.currentTimeMillis() < entry.expiresAt) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(new Result(HttpURLConnection.HTTP_OK, entry.body));
+        }
+        misses.incrementAndGet();
+        return coalescer.execute(url, () -> fetch(url, entry));
+    }
+
+    /**
+     * True if the URL has an entry in memory or on disk, fresh or not
+     */
+    public boolean contains(String url) {
+        return lookup(url) != null;
+    }
+
+    /**
+     * Caches a body that arrived as part of another response, such as one
+     * element of a batch, under its own URL
+     * The response's Cache-Control sets the TTL; its validators do not apply
+     * to the element, so the entry is refetched rather than revalidated.
+     * @param url URL the body would be served from
+     * @param body Body to cache
+     * @param response Response the body was taken from
+     */
+    public void offer(String url, String body, HttpResponse<?> response) {
+        Entry entry = new Entry(body, null, null, System.currentTimeMillis() + ttlMillis(response));
+        store(url, entry, isNoStore(response));
+    }
+
+    /**
+     * Fetches or revalidates a URL; concurrent misses for the same URL share one call
+     */
+    private CompletableFuture<Result> fetch(String url, Entry entry) {
+        HttpRequest.Builder request = engine.newGet(url);
+        if (entry != null) {
+            if (entry.etag != null) {
+                request.header("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.header("If-Modified-Since", entry.lastModified);
+            }
+        }
+
+        return engine.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            long now = System.currentTimeMillis();
+            int status = response.statusCode();
+
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+                revalidations.incrementAndGet();
+                Entry refreshed = new Entry(entry.body, entry.etag, entry.lastModified, now + ttlMillis(response));
+                store(url, refreshed, isNoStore(response));
+                return new Result(HttpURLConnection.HTTP_OK, refreshed.body);
+            }
+            if (status == HttpURLConnection.HTTP_OK) {
+                Entry fresh = new Entry(response.body(),
+                                        response.headers().firstValue("ETag").orElse(null),
+                                        response.headers().firstValue("Last-Modified").orElse(null),
+                                        now + ttlMillis(response));
+                store(url, fresh, isNoStore(response));
+                return new Result(status, fresh.body);
+            }
+            return new Result(status, null);
+        });
+    }
+
+    /**
+     * Drops every entry from memory and disk
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+        if (diskDirectory == null) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(diskDirectory, "*.entry")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Error clearing cache directory: " + e.getMessage());
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Single-flight deduplication applied to misses
+     */
+    public RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Cache: " + hits.get() + " hits, " + misses.get() + " misses, "
+            + revalidations.get() + " revalidated (304), " + evictions.get() + " evicted\n" + coalescer;
+    }
+
+    private long ttlMillis(HttpResponse<?> response) {
+        String cacheControl = response.headers().firstValue("Cache-Control").orElse("");
+        if (cacheControl.contains("no-cache")) {
+            return 0;
+        }
+        Matcher matcher = MAX_AGE.matcher(cacheControl);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) * 1000 : defaultTtlMillis;
+    }
+
+    private static boolean isNoStore(HttpResponse<?> response) {
+        return response.headers().firstValue("Cache-Control").orElse("").contains("no-store");
+    }
+
+    private Entry lookup(String url) {
+        synchronized (this) {
+            Entry entry = entries.get(url);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        Entry entry = readFromDisk(url);
+        if (entry != null) {
+            synchronized (this) {
+                put(url, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Caches a response in memory and on disk, or drops any stale copy if the
+     * response is no-store or too large to keep
+     */
+    private void store(String url, Entry entry, boolean noStore) {
+        boolean kept;
+        synchronized (this) {
+            kept = !noStore && put(url, entry);
+        }
+        if (kept) {
+            writeToDisk(url, entry);
+        } else {
+            deleteFromDisk(url);
+        }
+    }
+
+    /**
+     * Inserts an entry and evicts least recently used ones until both limits hold
+     * @return false if the entry alone exceeds maxBytes; it is not cached and
+     *         any previous entry for the URL is removed
+     */
+    private boolean put(String url, Entry entry) {
+        if (entry.weight() > maxBytes) {
+            Entry previous = entries.remove(url);
+            if (previous != null) {
+                currentBytes -= previous.weight();
+            }
+            return false;
+        }
+        Entry previous = entries.put(url, entry);
+        if (previous != null) {
+            currentBytes -= previous.weight();
+        }
+        currentBytes += entry.weight();
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || currentBytes > maxBytes) && eldest.hasNext()) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            if (victim.getValue() == entry) {
+                break;
+            }
+            currentBytes -= victim.getValue().weight();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+        return true;
+    }
+
+    private Path diskPath(String url) {
+        return diskDirectory.resolve(UUID.nameUUIDFromBytes(url.getBytes(StandardCharsets.UTF_8)) + ".entry");
+    }
+
+    private Entry readFromDisk(String url) {
+        if (diskDirectory == null || !Files.exists(diskPath(url))) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(diskPath(url))))) {
+            if (!url.equals(in.readUTF())) {
+                return null;
+            }
+            String etag = in.readBoolean() ? in.readUTF() : null;
+            String lastModified = in.readBoolean() ? in.readUTF() : null;
+            long expiresAt = in.readLong();
+            byte[] body = in.readAllBytes();
+            return new Entry(new String(body, StandardCharsets.UTF_8), etag, lastModified, expiresAt);
+        } catch (IOException e) {
+            System.err.println("Error reading cache entry: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void deleteFromDisk(String url) {
+        if (diskDirectory == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(diskPath(url));
+        } catch (IOException e) {
+            System.err.println("Error deleting cache entry: " + e.getMessage());
+        }
+    }
+
+    private void writeToDisk(String url, Entry entry) {
+        if (diskDirectory == null) {
+            return;
+        }
+        Path target = diskPath(url);
+        try {
+            Path temp = Files.createTempFile(diskDirectory, "entry", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeUTF(url);
+                out.writeBoolean(entry.etag != null);
+                if (entry.etag != null) {
+                    out.writeUTF(entry.etag);
+                }
+                out.writeBoolean(entry.lastModified != null);
+                if (entry.lastModified != null) {
+                    out.writeUTF(entry.lastModified);
+                }
+                out.writeLong(entry.expiresAt);
+                out.write(entry.body.getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error writing cache entry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Outcome of a cached GET
+     */
+    public static class Result {
+        private final int statusCode;
+        private final String body;
+
+        Result(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
+    private static class Entry {
+        final String body;
+        final String etag;
+        final String lastModified;
+        final long expiresAt;
+
+        Entry(String body, String etag, String lastModified, long expiresAt) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Approximate heap cost of the body (UTF-16)
+         */
+        long weight() {
+            return body.length() * 2L;
+        }
+    }
+}
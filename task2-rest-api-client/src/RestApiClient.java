@@ -1,7 +1,16 @@
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.json.JSONObject;
 import org.json.JSONArray;
 
@@ -18,6 +27,13 @@ import org.json.JSONArray;
  */
 public class RestApiClient {
     
+    // Override with -Drest.baseUrl=http://localhost:8080 to run against a local stub
+    static final String BASE_URL = System.getProperty("rest.baseUrl", "https://jsonplaceholder.typicode.com");
+    private static final HttpEngine engine = new HttpEngine();
+    private static final ResponseCache cache = createCache();
+    private static final RequestCoalescer.MicroBatcher<Integer, JsonRecords.User> userBatcher =
+        new RequestCoalescer.MicroBatcher<>(RestApiClient::loadUsers);
+    
     /**
      * Makes a GET request to the specified URL
      * @param urlString URL to make request to
@@ -25,33 +41,134 @@ public class RestApiClient {
      */
     public static String makeGetRequest(String urlString) {
         try {
-            URL url = new URL(urlString);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("User-Agent", "Java REST Client");
-            
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-                return response.toString();
-            } else {
-                System.err.println("HTTP Error: " + responseCode);
-                return null;
+            ResponseCache.Result result = cache.get(urlString);
+            if (result.getStatusCode() != HttpURLConnection.HTTP_OK) {
+                System.err.println("HTTP Error: " + result.getStatusCode());
             }
+            return result.getBody();
         } catch (Exception e) {
-            System.err.println("Error making request: " + e.getMessage());
+            System.err.println("Error making request: " + rootMessage(e));
             return null;
         }
     }
     
+    /**
+     * Makes a GET request without blocking the caller
+     * @param urlString URL to make request to
+     * @return Future completed with the response body, or null on HTTP error
+     */
+    public static CompletableFuture<String> makeGetRequestAsync(String urlString) {
+        return engine.getAsync(urlString).thenApply(RestApiClient::bodyOrNull);
+    }
+    
+    /**
+     * Makes GET requests for all URLs concurrently
+     * In-flight requests are capped per host by the engine.
+     * @param urls URLs to request
+     * @return Response bodies in the same order, null for failed requests
+     */
+    public static List<String> makeGetRequests(List<String> urls) {
+        List<CompletableFuture<HttpResponse<String>>> futures = engine.getAll(urls);
+        List<String> responses = new ArrayList<>(futures.size());
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            try {
+                responses.add(bodyOrNull(future.join()));
+            } catch (Exception e) {
+                System.err.println("Error making request: " + rootMessage(e));
+                responses.add(null);
+            }
+        }
+        return responses;
+    }
+    
+    /**
+     * Fetches a user without blocking the caller
+     * A user already in the response cache is served (or revalidated) from
+     * its /users/{id} entry. Other lookups arriving within a few milliseconds
+     * of each other are combined into a single /users?id=..&id=.. request,
+     * whose users are cached under their own URLs.
+     * @param userId User to fetch
+     * @return Future completed with the user, or null if it does not exist;
+     *         completed exceptionally if the request failed
+     */
+    public static CompletableFuture<JsonRecords.User> fetchUser(int userId) {
+        String url = userUrl(userId);
+        if (!cache.contains(url)) {
+            return userBatcher.load(userId);
+        }
+        return cache.getAsync(url).thenApply(result -> {
+            if (result.getStatusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (result.getStatusCode() != HttpURLConnection.HTTP_OK) {
+                throw new CompletionException(new IOException("HTTP Error: " + result.getStatusCode()));
+            }
+            return parseUser(result.getBody());
+        });
+    }
+    
+    /**
+     * Batch loader behind fetchUser: one request for all queued IDs
+     * IDs missing from a successful response complete with null; a failed
+     * request fails every future in the batch.
+     */
+    private static CompletableFuture<Map<Integer, JsonRecords.User>> loadUsers(List<Integer> userIds) {
+        StringBuilder url = new StringBuilder(BASE_URL + "/users");
+        for (int i = 0; i < userIds.size(); i++) {
+            url.append(i == 0 ? '?' : '&').append("id=").append(userIds.get(i));
+        }
+        return engine.getAsync(url.toString()).thenApply(response -> {
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                throw new CompletionException(new IOException("HTTP Error: " + response.statusCode()));
+            }
+            Map<Integer, JsonRecords.User> users = new HashMap<>();
+            JSONArray array = new JSONArray(response.body());
+            for (int i = 0; i < array.length(); i++) {
+                String body = array.getJSONObject(i).toString();
+                JsonRecords.User user = parseUser(body);
+                users.put(user.getId(), user);
+                cache.offer(userUrl(user.getId()), body, response);
+            }
+            return users;
+        });
+    }
+    
+    private static String userUrl(int userId) {
+        return BASE_URL + "/users/" + userId;
+    }
+    
+    private static JsonRecords.User parseUser(String body) {
+        try {
+            return JsonRecords.readUser(new JsonPullParser(new StringReader(body)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Creates the response cache; -Drest.cacheDir enables the on-disk tier
+     */
+    private static ResponseCache createCache() {
+        String cacheDir = System.getProperty("rest.cacheDir");
+        return new ResponseCache(engine, ResponseCache.DEFAULT_MAX_ENTRIES, ResponseCache.DEFAULT_MAX_BYTES,
+                                 ResponseCache.DEFAULT_TTL, cacheDir == null ? null : Paths.get(cacheDir));
+    }
+    
+    private static String bodyOrNull(HttpResponse<String> response) {
+        if (response.statusCode() == HttpURLConnection.HTTP_OK) {
+            return response.body();
+        }
+        System.err.println("HTTP Error: " + response.statusCode());
+        return null;
+    }
+    
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+    
     /**
      * Fetches and displays weather data (mock implementation)
      * Note: Replace with actual weather API key and endpoint
@@ -98,56 +215,80 @@ public class RestApiClient {
     public static void fetchPosts() {
         System.out.println("\n=== Fetching Posts from JSONPlaceholder ===");
         
-        String response = makeGetRequest("https://jsonplaceholder.typicode.com/posts?_limit=5");
+        String response = makeGetRequest(BASE_URL + "/posts?_limit=5");
         
         if (response != null) {
             try {
-                JSONArray posts = new JSONArray(response);
-                
-                for (int i = 0; i < posts.length(); i++) {
-                    JSONObject post = posts.getJSONObject(i);
-                    System.out.println("\n--- Post " + (i + 1) + " ---");
-                    System.out.println("ID: " + post.getInt("id"));
-                    System.out.println("User ID: " + post.getInt("userId"));
-                    System.out.println("Title: " + post.getString("title"));
-                    System.out.println("Body: " + post.getString("body").substring(0, 
-                        Math.min(100, post.getString("body").length())) + "...");
-                }
+                int[] index = {0};
+                JsonRecords.forEachPost(new JsonPullParser(new StringReader(response)), post -> {
+                    System.out.println("\n--- Post " + (++index[0]) + " ---");
+                    System.out.println("ID: " + post.getId());
+                    System.out.println("User ID: " + post.getUserId());
+                    System.out.println("Title: " + post.getTitle());
+                    System.out.println("Body: " + post.getBody().substring(0, 
+                        Math.min(100, post.getBody().length())) + "...");
+                });
             } catch (Exception e) {
                 System.err.println("Error parsing posts: " + e.getMessage());
             }
         }
     }
     
+    /**
+     * Streams every post page by page and prints a per-user summary
+     * Page size and prefetch depth come from -Drest.pageSize and -Drest.prefetchDepth.
+     */
+    public static void fetchAllPosts() {
+        System.out.println("\n=== Fetching All Posts (Paged) ===");
+        
+        int pageSize = Integer.getInteger("rest.pageSize", PagedFetcher.DEFAULT_PAGE_SIZE);
+        int prefetchDepth = Integer.getInteger("rest.prefetchDepth", PagedFetcher.DEFAULT_PREFETCH_DEPTH);
+        Map<Integer, Integer> postsPerUser = new TreeMap<>();
+        long start = System.nanoTime();
+        int total = 0;
+        
+        try {
+            Iterator<JsonRecords.Post> posts =
+                PagedFetcher.posts(engine, BASE_URL, pageSize, prefetchDepth).iterator();
+            while (posts.hasNext()) {
+                postsPerUser.merge(posts.next().getUserId(), 1, Integer::sum);
+                total++;
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching posts: " + rootMessage(e));
+        }
+        
+        postsPerUser.forEach((userId, count) -> System.out.println("User " + userId + ": " + count + " posts"));
+        System.out.printf("Fetched %d posts in %.1f ms (page size %d, prefetch depth %d)%n",
+                          total, (System.nanoTime() - start) / 1e6, pageSize, prefetchDepth);
+    }
+    
     /**
      * Fetches and displays user information
      */
     public static void fetchUserInfo(int userId) {
         System.out.println("\n=== Fetching User Information ===");
         
-        String response = makeGetRequest("https://jsonplaceholder.typicode.com/users/" + userId);
-        
-        if (response != null) {
-            try {
-                JSONObject user = new JSONObject(response);
-                JSONObject address = user.getJSONObject("address");
-                JSONObject geo = address.getJSONObject("geo");
-                JSONObject company = user.getJSONObject("company");
-                
-                System.out.println("User ID: " + user.getInt("id"));
-                System.out.println("Name: " + user.getString("name"));
-                System.out.println("Username: " + user.getString("username"));
-                System.out.println("Email: " + user.getString("email"));
-                System.out.println("Phone: " + user.getString("phone"));
-                System.out.println("Website: " + user.getString("website"));
-                System.out.println("City: " + address.getString("city"));
-                System.out.println("Zipcode: " + address.getString("zipcode"));
-                System.out.println("Company: " + company.getString("name"));
-                System.out.println("Company Motto: " + company.getString("catchPhrase"));
-                
-            } catch (Exception e) {
-                System.err.println("Error parsing user info: " + e.getMessage());
+        try {
+            JsonRecords.User user = fetchUser(userId).join();
+            
+            if (user == null) {
+                System.err.println("User not found: " + userId);
+            } else {
+                System.out.println("User ID: " + user.getId());
+                System.out.println("Name: " + user.getName());
+                System.out.println("Username: " + user.getUsername());
+                System.out.println("Email: " + user.getEmail());
+                System.out.println("Phone: " + user.getPhone());
+                System.out.println("Website: " + user.getWebsite());
+                System.out.println("City: " + user.getCity());
+                System.out.println("Zipcode: " + user.getZipcode());
+                System.out.println("Company: " + user.getCompanyName());
+                System.out.println("Company Motto: " + user.getCatchPhrase());
             }
+            
+        } catch (Exception e) {
+            System.err.println("Error fetching user info: " + rootMessage(e));
         }
     }
     
@@ -157,19 +298,17 @@ public class RestApiClient {
     public static void fetchUserTodos(int userId) {
         System.out.println("\n=== Fetching User Todos ===");
         
-        String response = makeGetRequest("https://jsonplaceholder.typicode.com/todos?userId=" + userId + "&_limit=5");
+        String response = makeGetRequest(BASE_URL + "/todos?userId=" + userId + "&_limit=5");
         
         if (response != null) {
             try {
-                JSONArray todos = new JSONArray(response);
-                
-                for (int i = 0; i < todos.length(); i++) {
-                    JSONObject todo = todos.getJSONObject(i);
-                    System.out.println("\n--- Todo " + (i + 1) + " ---");
-                    System.out.println("ID: " + todo.getInt("id"));
-                    System.out.println("Title: " + todo.getString("title"));
-                    System.out.println("Completed: " + (todo.getBoolean("completed") ? "✓" : "✗"));
-                }
+                int[] index = {0};
+                JsonRecords.forEachTodo(new JsonPullParser(new StringReader(response)), todo -> {
+                    System.out.println("\n--- Todo " + (++index[0]) + " ---");
+                    System.out.println("ID: " + todo.getId());
+                    System.out.println("Title: " + todo.getTitle());
+                    System.out.println("Completed: " + (todo.isCompleted() ? "✓" : "✗"));
+                });
             } catch (Exception e) {
                 System.err.println("Error parsing todos: " + e.getMessage());
             }
@@ -185,7 +324,9 @@ public class RestApiClient {
         System.out.println("2. Fetch User Info");
         System.out.println("3. Fetch User Todos");
         System.out.println("4. Show Weather Data (Demo)");
-        System.out.println("5. Exit");
+        System.out.println("5. Show Client Statistics");
+        System.out.println("6. Fetch All Posts (Paged)");
+        System.out.println("7. Exit");
         System.out.print("Choose an option: ");
     }
     
@@ -226,6 +367,14 @@ public class RestApiClient {
                         fetchWeatherData();
                         break;
                     case 5:
+                        System.out.println(cache);
+                        System.out.println(userBatcher);
+                        System.out.println(engine.getPipeline());
+                        break;
+                    case 6:
+                        fetchAllPosts();
+                        break;
+                    case 7:
                         System.out.println("Goodbye!");
                         scanner.close();
                         return;
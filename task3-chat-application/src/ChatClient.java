@@ -0,0 +1,303 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Client library for the binary chat protocol (ChatFrames)
+ * send() only encodes into a pooled direct buffer; flush() writes everything
+ * queued since the last flush in one go, so a burst of lines costs a single
+ * system call. Incoming MESSAGE frames are decoded on a reader thread and
+ * handed to the listener straight from that thread's direct buffer.
+ * Both buffers come from a pool shared by all clients in the process, so
+ * load generators opening thousands of connections reuse them.
+ *
+ * Usage: java ChatClient [host] [port] [username]
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class ChatClient implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final BufferPool BUFFERS = new BufferPool(BUFFER_SIZE, 1024);
+    private static final int MAX_MESSAGE_BYTES = 16 * 1024 * 1024;
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    /**
+     * Receives messages from the server on the client's reader thread
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param message UTF-8 message without line terminator, valid only during the call
+         */
+        void onMessage(ByteBuffer message);
+
+        /**
+         * Called once when the connection ends
+         * @param error Cause, or null after a normal close
+         */
+        default void onClose(IOException error) {
+        }
+
+        /**
+         * Adapts a consumer of decoded lines
+         */
+        static Listener lines(Consumer<String> consumer) {
+            return message -> consumer.accept(StandardCharsets.UTF_8.decode(message).toString());
+        }
+    }
+
+    private final SocketChannel channel;
+    private final Listener listener;
+    private ByteBuffer readBuffer = BUFFERS.acquire();
+    private final ByteBuffer writeBuffer = BUFFERS.acquire();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final Thread reader;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private ChatClient(SocketChannel channel, Listener listener) {
+        this.channel = channel;
+        this.listener = listener;
+        this.reader = new Thread(this::readLoop, "chat-client-reader");
+        this.reader.setDaemon(true);
+    }
+
+    /**
+     * Connects, negotiates the binary protocol and logs in
+     * @param username Name to log in with
+     * @param listener Receives every message after the handshake
+     * @throws IOException If the connection or the handshake fails
+     */
+    public static ChatClient connect(String host, int port, String username, Listener listener) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        ChatClient client = new ChatClient(channel, listener);
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            client.handshake();
+        } catch (IOException e) {
+            client.release();
+            throw e;
+        }
+        client.reader.start();
+        client.send(username);
+        client.flush();
+        return client;
+    }
+
+    /**
+     * Queues one line (a message or a command) as a LINE frame
+     * Call flush() to write it; a full buffer is flushed automatically.
+     * @throws IllegalArgumentException If the line is longer than a frame allows
+     */
+    public synchronized void send(String line) throws IOException {
+        ensureOpen();
+        if (!encodeFrame(line)) {
+            flush();
+            if (!encodeFrame(line)) {
+                throw new IllegalArgumentException("Line too long: " + line.length() + " chars");
+            }
+        }
+    }
+
+    /**
+     * Writes every queued frame
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        } finally {
+            writeBuffer.clear();
+        }
+    }
+
+    /**
+     * Tells the server the client is leaving, then closes the connection
+     */
+    public void quit() throws IOException {
+        // close() joins the reader, so it must run without the monitor a listener may be waiting for
+        try {
+            synchronized (this) {
+                if (writeBuffer.remaining() < ChatFrames.HEADER_BYTES) {
+                    flush();
+                }
+                ChatFrames.put(writeBuffer, ChatFrames.BYE, NO_PAYLOAD, 0, 0);
+                flush();
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Reached from the caller and from the reader's exit; only one may release the buffer
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        channel.close();
+        if (Thread.currentThread() != reader) {
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            BUFFERS.release(writeBuffer);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed.get()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Encodes a LINE frame in place, reserving the header before the text is known
+     * @return false if it did not fit; the buffer is left unchanged then
+     */
+    private boolean encodeFrame(String line) {
+        int start = writeBuffer.position();
+        if (writeBuffer.remaining() < ChatFrames.HEADER_BYTES) {
+            return false;
+        }
+        writeBuffer.position(start + ChatFrames.HEADER_BYTES);
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(line), writeBuffer, true);
+        int length = writeBuffer.position() - start - ChatFrames.HEADER_BYTES;
+        if (result.isOverflow() || length > ChatFrames.MAX_PAYLOAD_BYTES) {
+            writeBuffer.position(start);
+            return false;
+        }
+        writeBuffer.putInt(start, length + 1).put(start + 4, ChatFrames.LINE);
+        return true;
+    }
+
+    /**
+     * Sends ChatFrames.MAGIC, skips the text prompt the server greets with
+     * and waits for the HELLO frame
+     */
+    private void handshake() throws IOException {
+        channel.write(ByteBuffer.wrap(ChatFrames.MAGIC));
+        readBuffer.clear();
+        int promptEnd = -1;
+        while (true) {
+            if (channel.read(readBuffer) < 0) {
+                throw new EOFException("Server closed the connection during the handshake");
+            }
+            for (int i = 0; promptEnd < 0 && i < readBuffer.position(); i++) {
+                if (readBuffer.get(i) == '\n') {
+                    promptEnd = i + 1;
+                }
+            }
+            if (promptEnd >= 0 && readBuffer.position() >= promptEnd + ChatFrames.HEADER_BYTES + 1) {
+                break;
+            }
+            if (!readBuffer.hasRemaining()) {
+                throw new IOException("No handshake reply from server");
+            }
+        }
+        readBuffer.flip().position(promptEnd);
+        if (readBuffer.getInt() != 2 || readBuffer.get() != ChatFrames.HELLO) {
+            throw new IOException("Server does not speak the binary protocol");
+        }
+        byte version = readBuffer.get();
+        if (version != ChatFrames.VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+        readBuffer.compact();
+    }
+
+    private void readLoop() {
+        IOException error = null;
+        try {
+            while (true) {
+                readBuffer.flip();
+                ChatFrames.decode(readBuffer, MAX_MESSAGE_BYTES, this::onFrame);
+                readBuffer.compact();
+                if (!readBuffer.hasRemaining()) {
+                    // A message larger than the pooled buffer: continue in a bigger heap buffer
+                    ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+                    larger.put(readBuffer.flip());
+                    BUFFERS.release(readBuffer);
+                    readBuffer = larger;
+                }
+                if (channel.read(readBuffer) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            if (!closed.get()) {
+                error = e;
+            }
+        } finally {
+            BUFFERS.release(readBuffer);
+            try {
+                close();
+            } catch (IOException e) {
+                // Already closing
+            }
+            listener.onClose(error);
+        }
+    }
+
+    private boolean onFrame(byte type, ByteBuffer payload) throws IOException {
+        if (type != ChatFrames.MESSAGE) {
+            throw new IOException("Unexpected frame type " + type);
+        }
+        listener.onMessage(payload);
+        return true;
+    }
+
+    /**
+     * Releases the buffers of a client whose reader never started
+     */
+    private void release() throws IOException {
+        closed.set(true);
+        channel.close();
+        BUFFERS.release(readBuffer);
+        BUFFERS.release(writeBuffer);
+    }
+
+    /**
+     * Console client: prints messages and sends each typed line
+     */
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 12345;
+        String username = args.length > 2 ? args[2] : System.getProperty("user.name");
+
+        try (BufferedReader console = new BufferedReader(new InputStreamReader(System.in))) {
+            ChatClient client = connect(host, port, username, Listener.lines(System.out::println));
+            String line;
+            while ((line = console.readLine()) != null) {
+                if ("QUIT".equalsIgnoreCase(line.trim())) {
+                    break;
+                }
+                client.send(line);
+                client.flush();
+            }
+            client.quit();
+        } catch (IOException e) {
+            System.err.println("Chat client error: " + e.getMessage());
+        }
+    }
+}
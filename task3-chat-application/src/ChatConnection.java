@@ -0,0 +1,44 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A connected chat client as seen by ChatServer, independent of the engine
+ * (thread per connection or NIO event loop) that serves it
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public interface ChatConnection {
+
+    /**
+     * Encodes a message as a UTF-8 line, once, for any number of recipients
+     */
+    static byte[] encode(String message) {
+        return (message + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Queues an encoded line for this client without blocking
+     * @param line Line from encode(); shared between recipients, never modified
+     * @return true if the client is still connected, false otherwise
+     */
+    boolean send(byte[] line);
+
+    /**
+     * Queues a line to this client
+     * @param message Message to send, without line terminator
+     * @return true if the client is still connected, false otherwise
+     */
+    default boolean sendMessage(String message) {
+        return send(encode(message));
+    }
+
+    /**
+     * Username chosen by the client, or null before it has been entered
+     */
+    String getUsername();
+
+    /**
+     * Lines queued for this client but not yet written
+     */
+    int getQueuedLines();
+}
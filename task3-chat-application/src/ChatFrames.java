@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary chat protocol: length-prefixed, typed frames
+ * A client opts in by sending MAGIC as its very first bytes; a NUL byte can
+ * never start a typed username, so text clients are unaffected. The server
+ * still greets with the text prompt line, then answers with a HELLO frame,
+ * after which both directions carry frames only.
+ *
+ * Frame layout: int length (type + payload) | byte type | UTF-8 payload
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public final class ChatFrames {
+
+    public static final byte VERSION = 1;
+    public static final byte[] MAGIC = {0, 'C', 'B', VERSION};
+
+    /** Server to client: handshake accepted, payload is the protocol version */
+    public static final byte HELLO = 0;
+    /** Client to server: one input line (username, chat text or command) */
+    public static final byte LINE = 1;
+    /** Server to client: one output line */
+    public static final byte MESSAGE = 2;
+    /** Client to server: leave the chat */
+    public static final byte BYE = 3;
+
+    public static final int HEADER_BYTES = 5;
+    public static final int MAX_PAYLOAD_BYTES = NioChatServer.MAX_LINE_BYTES;
+
+    /**
+     * Queue marker: lines queued after it are sent as frames. Compared by identity.
+     */
+    static final byte[] UPGRADE = new byte[0];
+
+    private ChatFrames() {
+    }
+
+    /**
+     * Receives decoded frames
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+        /**
+         * @param type Frame type
+         * @param payload Payload, valid only during the call
+         * @return false to stop decoding
+         */
+        boolean onFrame(byte type, ByteBuffer payload) throws IOException;
+    }
+
+    /**
+     * Appends one frame if it fits
+     * @return false if out has too little room; nothing is written then
+     */
+    public static boolean put(ByteBuffer out, byte type, byte[] payload, int offset, int length) {
+        if (out.remaining() < HEADER_BYTES + length) {
+            return false;
+        }
+        out.putInt(length + 1);
+        out.put(type);
+        out.put(payload, offset, length);
+        return true;
+    }
+
+    /**
+     * Checks a decoded LINE payload before it reaches the session
+     * A LINE is one line; an embedded CR or LF would let a binary client
+     * forge extra lines, such as another user's message, for text clients.
+     * @return The line
+     * @throws IOException If the line contains a line break
+     */
+    public static String checkLine(String line) throws IOException {
+        if (line.indexOf('\n') >= 0 || line.indexOf('\r') >= 0) {
+            throw new IOException("LINE frame contains a line break");
+        }
+        return line;
+    }
+
+    /**
+     * Decodes every complete frame in the buffer (in read mode), leaving the
+     * position at the start of the first incomplete frame
+     * @return false if the handler stopped decoding
+     * @throws IOException If a frame length is out of range
+     */
+    public static boolean decode(ByteBuffer in, FrameHandler handler) throws IOException {
+        return decode(in, MAX_PAYLOAD_BYTES, handler);
+    }
+
+    /**
+     * Decodes frames with a custom payload limit; server messages carry a
+     * sender prefix, so clients accept payloads longer than MAX_PAYLOAD_BYTES
+     */
+    public static boolean decode(ByteBuffer in, int maxPayload, FrameHandler handler) throws IOException {
+        while (in.remaining() >= HEADER_BYTES) {
+            int start = in.position();
+            int length = in.getInt(start);
+            if (length < 1 || length - 1 > maxPayload) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            byte type = in.get(start + 4);
+            ByteBuffer payload = in.duplicate();
+            payload.position(start + HEADER_BYTES).limit(start + 4 + length);
+            in.position(start + 4 + length);
+            if (!handler.onFrame(type, payload)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,554 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, segmented chat history on disk
+ * Room broadcasts are queued by the delivering thread and written by a single
+ * writer thread in batches, with one fsync per batch. Records live in segment
+ * files named after their starting offset in the log; a segment is sealed once
+ * it reaches the segment size. Each room keeps a sparse in-memory index (one
+ * entry every INDEX_INTERVAL messages of that room), so replaying a room's last
+ * N messages scans the memory-mapped log from a nearby offset instead of from
+ * the start. The index is rebuilt from the segments on startup, and the oldest
+ * segments are deleted once the log exceeds its size or age limit.
+ *
+ * Record layout: int length | int crc32c | long timestamp | short roomLength | room | message
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class ChatHistoryLog implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 16L * 1024 * 1024;
+    public static final long DEFAULT_RETENTION_BYTES = 256L * 1024 * 1024;
+    public static final Duration DEFAULT_RETENTION_AGE = Duration.ofDays(7);
+    public static final int INDEX_INTERVAL = 32;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 2;
+    private static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+    private static final int MAX_BATCH = 1024;
+    private static final long RETENTION_CHECK_MILLIS = 60_000;
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long retentionBytes;
+    private final long retentionMillis;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, RoomIndex> rooms = new ConcurrentHashMap<>();
+    private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(64 * 1024);
+    private final Thread writer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(64 * 1024);
+    private Segment active;
+    private volatile long committedEnd;
+    private volatile boolean running = true;
+
+    /**
+     * Opens a log with default segment size and retention
+     */
+    public ChatHistoryLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_RETENTION_BYTES, DEFAULT_RETENTION_AGE);
+    }
+
+    /**
+     * Opens or creates a log, recovering any existing segments
+     * @param directory Directory holding the segment files
+     * @param segmentBytes Size at which the active segment is sealed
+     * @param retentionBytes Total size above which the oldest segments are deleted
+     * @param retentionAge Age after which a sealed segment is deleted
+     */
+    public ChatHistoryLog(Path directory, long segmentBytes, long retentionBytes, Duration retentionAge)
+            throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retentionBytes = retentionBytes;
+        this.retentionMillis = retentionAge.toMillis();
+        Files.createDirectories(directory);
+        recover();
+        writer = new Thread(this::writeLoop, "chat-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a room broadcast for the log without blocking on disk I/O
+     * @param room Room the line was delivered to
+     * @param line Encoded line as sent to clients; a trailing newline is not stored
+     */
+    public void append(String room, byte[] line) {
+        int length = line.length > 0 && line[line.length - 1] == '\n' ? line.length - 1 : line.length;
+        if (!running || length > MAX_MESSAGE_BYTES) {
+            return;
+        }
+        Record record = new Record(room, line, length, System.currentTimeMillis());
+        // Called on event-loop threads, so a full queue drops the record rather than waiting
+        if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns up to the last n messages logged for a room, oldest first
+     * Only records already written and synced are visible.
+     */
+    public List<Message> recent(String room, int n) throws IOException {
+        RoomIndex index = rooms.get(room);
+        if (index == null || n <= 0 || segments.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long start = Math.max(index.floorOffset(index.count() - n), segments.firstKey());
+        Long first = segments.floorKey(start);
+        long end = committedEnd;
+        byte[] roomBytes = room.getBytes(StandardCharsets.UTF_8);
+        ArrayDeque<Message> last = new ArrayDeque<>(n);
+
+        for (Segment segment : segments.tailMap(first == null ? start : first, true).values()) {
+            if (segment.base >= end) {
+                break;
+            }
+            ByteBuffer view;
+            try {
+                view = segment.map(end - segment.base);
+            } catch (ClosedChannelException | NoSuchFileException e) {
+                continue; // Deleted by retention while we were reading
+            }
+            view.position((int) Math.max(0, start - segment.base));
+            while (view.remaining() >= HEADER_BYTES) {
+                int length = view.getInt();
+                int next = view.position() + length;
+                view.getInt(); // checksum, verified on recovery
+                long timestamp = view.getLong();
+                int roomLength = view.getShort();
+                if (sameRoom(view, roomBytes, roomLength)) {
+                    view.position(view.position() + roomLength);
+                    byte[] message = new byte[next - view.position()];
+                    view.get(message);
+                    if (last.size() == n) {
+                        last.pollFirst();
+                    }
+                    last.addLast(new Message(timestamp, new String(message, StandardCharsets.UTF_8)));
+                }
+                view.position(next);
+            }
+        }
+        return new ArrayList<>(last);
+    }
+
+    /**
+     * Records dropped because the write queue stayed full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Write batches completed, each followed by one fsync
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Writes everything still queued, syncs and closes the segments
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "History: " + segments.size() + " segments, " + committedEnd + " bytes written, "
+            + batches.get() + " fsync batches, " + dropped.get() + " dropped";
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        long nextRetentionCheck = 0;
+        while (running || !queue.isEmpty()) {
+            try {
+                Record first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (System.currentTimeMillis() >= nextRetentionCheck) {
+                    applyRetention();
+                    nextRetentionCheck = System.currentTimeMillis() + RETENTION_CHECK_MILLIS;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                System.err.println("Error writing chat history: " + e.getMessage());
+                dropped.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Appends a batch with as few writes as possible and a single fsync,
+     * then publishes the new records to readers and the room indexes
+     */
+    private void writeBatch(List<Record> batch) throws IOException {
+        writeBuffer.clear();
+        for (Record record : batch) {
+            int size = record.size();
+            if (active.size + writeBuffer.position() + size > segmentBytes
+                    && active.size + writeBuffer.position() > 0) {
+                flushBuffer();
+                roll();
+            }
+            if (writeBuffer.remaining() < size) {
+                flushBuffer();
+                if (writeBuffer.capacity() < size) {
+                    writeBuffer = ByteBuffer.allocate(size);
+                }
+            }
+            record.offset = active.base + active.size + writeBuffer.position();
+            record.encode(writeBuffer);
+            active.lastTimestamp = record.timestamp;
+        }
+        flushBuffer();
+        active.channel.force(false);
+        committedEnd = active.base + active.size;
+        batches.incrementAndGet();
+
+        for (Record record : batch) {
+            rooms.computeIfAbsent(record.room, room -> new RoomIndex()).add(record.offset);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            active.size += active.channel.write(writeBuffer, active.size);
+        }
+        writeBuffer.clear();
+    }
+
+    /**
+     * Seals the active segment and starts a new one at the current end of the log
+     */
+    private void roll() throws IOException {
+        active.channel.force(false);
+        committedEnd = active.base + active.size;
+        active = openSegment(active.base + active.size);
+        segments.put(active.base, active);
+        applyRetention();
+    }
+
+    /**
+     * Deletes the oldest sealed segments while the log is too large or they are too old
+     */
+    private void applyRetention() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.size;
+        }
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || (total <= retentionBytes && oldest.lastTimestamp >= cutoff)) {
+                break;
+            }
+            segments.remove(oldest.base);
+            total -= oldest.size;
+            oldest.close();
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                System.err.println("Error deleting history segment: " + e.getMessage());
+            }
+        }
+        long firstOffset = segments.firstKey();
+        for (RoomIndex index : rooms.values()) {
+            index.prune(firstOffset);
+        }
+    }
+
+    /**
+     * Loads existing segments, rebuilding the room indexes; a torn record at
+     * the end of the last segment is cut off
+     */
+    private void recover() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring unexpected file in history directory: " + name);
+                }
+            }
+        }
+        Collections.sort(bases);
+
+        for (long base : bases) {
+            Segment segment = openSegment(base);
+            segment.size = scan(segment);
+            if (segment.size < segment.channel.size()) {
+                System.err.println("Truncating damaged history segment " + segment.path.getFileName()
+                    + " at " + segment.size);
+                segment.channel.truncate(segment.size);
+            }
+            segments.put(base, segment);
+        }
+
+        if (segments.isEmpty()) {
+            active = openSegment(0);
+            segments.put(0L, active);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        committedEnd = active.base + active.size;
+    }
+
+    /**
+     * Indexes the valid records of a segment
+     * @return Length of the valid prefix
+     */
+    private long scan(Segment segment) throws IOException {
+        ByteBuffer view = segment.map(segment.channel.size());
+        CRC32C crc = new CRC32C();
+        while (view.remaining() >= HEADER_BYTES) {
+            int start = view.position();
+            int length = view.getInt();
+            if (length < HEADER_BYTES - 4 || length > view.remaining()) {
+                return start;
+            }
+            int next = view.position() + length;
+            int checksum = view.getInt();
+            ByteBuffer body = view.duplicate();
+            body.limit(next);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            segment.lastTimestamp = view.getLong();
+            byte[] room = new byte[view.getShort()];
+            view.get(room);
+            rooms.computeIfAbsent(new String(room, StandardCharsets.UTF_8), r -> new RoomIndex())
+                .add(segment.base + start);
+            view.position(next);
+        }
+        return view.position();
+    }
+
+    private Segment openSegment(long base) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", base, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(base, path, channel);
+    }
+
+    private static boolean sameRoom(ByteBuffer view, byte[] room, int length) {
+        if (length != room.length) {
+            return false;
+        }
+        int at = view.position();
+        for (int i = 0; i < length; i++) {
+            if (view.get(at + i) != room[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A logged message
+     */
+    public static class Message {
+        private final long timestamp;
+        private final String text;
+
+        Message(long timestamp, String text) {
+            this.timestamp = timestamp;
+            this.text = text;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    private static class Record {
+        final String room;
+        final byte[] roomBytes;
+        final byte[] line;
+        final int length;
+        final long timestamp;
+        long offset;
+
+        Record(String room, byte[] line, int length, long timestamp) {
+            this.room = room;
+            this.roomBytes = room.getBytes(StandardCharsets.UTF_8);
+            this.line = line;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+
+        int size() {
+            return HEADER_BYTES + roomBytes.length + length;
+        }
+
+        void encode(ByteBuffer out) {
+            int start = out.position();
+            out.putInt(size() - 4);
+            out.putInt(0);
+            out.putLong(timestamp);
+            out.putShort((short) roomBytes.length);
+            out.put(roomBytes);
+            out.put(line, 0, length);
+
+            ByteBuffer body = out.duplicate();
+            body.position(start + 8);
+            body.limit(out.position());
+            CRC32C crc = new CRC32C();
+            crc.update(body);
+            out.putInt(start + 4, (int) crc.getValue());
+        }
+    }
+
+    /**
+     * One segment file; sealed segments are mapped once and reused
+     */
+    private static class Segment {
+        final long base;
+        final Path path;
+        final FileChannel channel;
+        volatile long size;
+        volatile long lastTimestamp;
+        private MappedByteBuffer sealedMapping;
+
+        Segment(long base, Path path, FileChannel channel) {
+            this.base = base;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /**
+         * Read-only view of the first length bytes (capped at the segment size)
+         */
+        synchronized ByteBuffer map(long length) throws IOException {
+            long visible = Math.min(length, size == 0 ? channel.size() : size);
+            if (sealedMapping != null && sealedMapping.capacity() >= visible) {
+                ByteBuffer view = sealedMapping.duplicate();
+                view.limit((int) visible);
+                return view;
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, visible);
+            if (visible == size) {
+                // Readers only ever see up to the committed end, so a full mapping stays valid
+                sealedMapping = mapping;
+            }
+            return mapping.duplicate();
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to flush; reads will fail and skip this segment
+            }
+        }
+    }
+
+    /**
+     * Sparse index of one room: the log offset of every INDEX_INTERVAL-th message
+     */
+    private static class RoomIndex {
+        private long count;
+        private long[] sequences = new long[8];
+        private long[] offsets = new long[8];
+        private int entries;
+
+        synchronized void add(long offset) {
+            if (count % INDEX_INTERVAL == 0) {
+                if (entries == offsets.length) {
+                    sequences = Arrays.copyOf(sequences, entries * 2);
+                    offsets = Arrays.copyOf(offsets, entries * 2);
+                }
+                sequences[entries] = count;
+                offsets[entries] = offset;
+                entries++;
+            }
+            count++;
+        }
+
+        synchronized long count() {
+            return count;
+        }
+
+        /**
+         * Offset of the last indexed message at or before the given room sequence,
+         * or 0 if there is none
+         */
+        synchronized long floorOffset(long sequence) {
+            int low = 0;
+            int high = entries - 1;
+            long result = 0;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (sequences[mid] <= sequence) {
+                    result = offsets[mid];
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Drops entries that point into deleted segments
+         */
+        synchronized void prune(long firstOffset) {
+            int keep = 0;
+            while (keep < entries && offsets[keep] < firstOffset) {
+                keep++;
+            }
+            if (keep > 0) {
+                System.arraycopy(sequences, keep, sequences, 0, entries - keep);
+                System.arraycopy(offsets, keep, offsets, 0, entries - keep);
+                entries -= keep;
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Load generator for ChatServer
+ * Opens many client connections from a single selector thread, logs them in,
+ * then has a few of them broadcast timestamped pings. Every other client
+ * measures how long each ping took to reach it. Run it against the server in
+ * each mode to compare how many connections stay up and at what latency.
+ *
+ * Usage: java ChatLoadGenerator [host] [port] [connections] [senders] [messagesPerSecond] [seconds]
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class ChatLoadGenerator {
+
+    private static final byte[] PING = "ping ".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_SAMPLES = 5_000_000;
+
+    private final Selector selector;
+    private long[] latencies = new long[1024];
+    private int sampleCount;
+    private long received;
+    private int connected;
+    private int failed;
+    private int closedByServer;
+    private long lastReceived;
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 12345;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int senders = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int messagesPerSecond = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        int seconds = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+
+        System.out.println("=== Chat Load Generator: " + connections + " connections, " + senders
+            + " senders, " + messagesPerSecond + " msg/s for " + seconds + "s ===");
+        new ChatLoadGenerator().run(new InetSocketAddress(host, port), connections,
+                                    Math.min(senders, connections), messagesPerSecond, seconds);
+    }
+
+    private ChatLoadGenerator() throws IOException {
+        selector = Selector.open();
+    }
+
+    private void run(InetSocketAddress address, int connections, int senders,
+                     int messagesPerSecond, int seconds) throws IOException {
+        Client[] clients = new Client[connections];
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            clients[i] = new Client(i);
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                clients[i].channel = channel;
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, clients[i]);
+            } catch (IOException e) {
+                failed++;
+            }
+            // Keep the accept backlog from overflowing
+            if (i % 100 == 99) {
+                poll(1);
+            }
+        }
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (connected + failed < connections && System.nanoTime() < deadline) {
+            poll(10);
+        }
+        System.out.printf("Connected %d/%d in %.0f ms (%d failed)%n", connected, connections,
+                          (System.nanoTime() - connectStart) / 1e6, failed);
+
+        // Every login is broadcast to everyone; let that storm drain before measuring
+        long settleStart = System.nanoTime();
+        awaitQuiet();
+        System.out.printf("Join broadcasts settled after %.0f ms%n", (System.nanoTime() - settleStart) / 1e6);
+        received = 0;
+        sampleCount = 0;
+
+        long intervalNanos = 1_000_000_000L / Math.max(1, messagesPerSecond);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long nextSend = start;
+        long sent = 0;
+        int sender = 0;
+        while (System.nanoTime() < end) {
+            long now = System.nanoTime();
+            while (now >= nextSend && senders > 0) {
+                Client client = clients[sender];
+                sender = (sender + 1) % senders;
+                if (client.loggedIn && client.channel.isOpen()) {
+                    try {
+                        if (client.send("ping " + System.nanoTime())) {
+                            sent++;
+                        }
+                    } catch (IOException e) {
+                        // Dropped before the read side noticed, e.g. by the DISCONNECT slow-consumer policy
+                        closedByServer++;
+                        client.channel.close();
+                    }
+                }
+                nextSend += intervalNanos;
+            }
+            poll(Math.max(1, (nextSend - System.nanoTime()) / 1_000_000));
+        }
+        awaitQuiet();
+
+        int open = 0;
+        for (Client client : clients) {
+            if (client.channel != null && client.channel.isOpen() && client.loggedIn) {
+                open++;
+            }
+        }
+        System.out.println("Connections still open: " + open + " (" + closedByServer + " closed by server)");
+        System.out.println("Pings sent: " + sent + ", deliveries received: " + received
+            + String.format(" (%.0f/s)", received / (double) seconds));
+        if (sampleCount > 0) {
+            long[] sorted = Arrays.copyOf(latencies, sampleCount);
+            Arrays.sort(sorted);
+            System.out.printf("Delivery latency: p50=%.2f ms  p99=%.2f ms  p99.9=%.2f ms  max=%.2f ms%n",
+                              percentile(sorted, 50), percentile(sorted, 99), percentile(sorted, 99.9),
+                              sorted[sorted.length - 1] / 1e6);
+        }
+
+        for (Client client : clients) {
+            if (client.channel != null) {
+                client.channel.close();
+            }
+        }
+        selector.close();
+    }
+
+    /**
+     * Polls until nothing has been received for a second (at most a minute)
+     */
+    private void awaitQuiet() throws IOException {
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        lastReceived = System.nanoTime();
+        while (System.nanoTime() - lastReceived < 1_000_000_000L && System.nanoTime() < deadline) {
+            poll(10);
+        }
+    }
+
+    private void poll(long timeoutMillis) throws IOException {
+        selector.select(timeoutMillis);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Client client = (Client) key.attachment();
+            try {
+                if (key.isConnectable()) {
+                    client.channel.finishConnect();
+                    key.interestOps(SelectionKey.OP_READ);
+                    connected++;
+                } else if (key.isReadable()) {
+                    client.read();
+                }
+            } catch (IOException e) {
+                if (client.loggedIn) {
+                    closedByServer++;
+                } else {
+                    failed++;
+                }
+                key.cancel();
+                client.channel.close();
+            }
+        }
+    }
+
+    private void record(long latencyNanos) {
+        received++;
+        if (sampleCount == MAX_SAMPLES) {
+            return;
+        }
+        if (sampleCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, Math.min(MAX_SAMPLES, latencies.length * 2));
+        }
+        latencies[sampleCount++] = latencyNanos;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * One simulated user; parses lines in place without building Strings
+     */
+    private class Client {
+        final int id;
+        final ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        SocketChannel channel;
+        boolean loggedIn;
+
+        Client(int id) {
+            this.id = id;
+        }
+
+        boolean send(String line) throws IOException {
+            ByteBuffer out = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+            // Messages are tiny; a full socket buffer means the server is not keeping up
+            channel.write(out);
+            return !out.hasRemaining();
+        }
+
+        void read() throws IOException {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("closed by server");
+            }
+            lastReceived = System.nanoTime();
+            buffer.flip();
+            int lineStart = buffer.position();
+            for (int i = lineStart; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    onLine(lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            buffer.position(lineStart);
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                // A line longer than the buffer cannot be a ping; discard it
+                buffer.clear();
+            }
+        }
+
+        private void onLine(int start, int end) throws IOException {
+            if (!loggedIn) {
+                loggedIn = true;
+                send("load" + id);
+                return;
+            }
+            int at = indexOf(start, end);
+            if (at < 0) {
+                return;
+            }
+            long sentAt = 0;
+            for (int i = at + PING.length; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b < '0' || b > '9') {
+                    if (b == '-') {
+                        continue;
+                    }
+                    break;
+                }
+                sentAt = sentAt * 10 + (b - '0');
+            }
+            if (buffer.get(at + PING.length) == '-') {
+                sentAt = -sentAt;
+            }
+            record(System.nanoTime() - sentAt);
+        }
+
+        private int indexOf(int start, int end) {
+            outer:
+            for (int i = start; i <= end - PING.length; i++) {
+                for (int j = 0; j < PING.length; j++) {
+                    if (buffer.get(i + j) != PING[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+}
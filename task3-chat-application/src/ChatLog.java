@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous, rate-limited console log for per-event messages
+ * Callers only offer the line to a bounded queue; a daemon thread prints it.
+ * At most the configured number of lines per second are queued, and lines
+ * over the limit or arriving while the queue is full are counted instead,
+ * with a summary printed once the burst is over. Console I/O therefore
+ * never slows down the threads serving clients.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public final class ChatLog {
+    public static final int DEFAULT_LINES_PER_SECOND = 100;
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private static final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicInteger issuedThisSecond = new AtomicInteger();
+    private static final LongAdder suppressed = new LongAdder();
+    private static volatile long currentSecond;
+    private static volatile int linesPerSecond = DEFAULT_LINES_PER_SECOND;
+
+    static {
+        Thread printer = new Thread(ChatLog::printLoop, "chat-log");
+        printer.setDaemon(true);
+        printer.start();
+    }
+
+    private ChatLog() {
+    }
+
+    /**
+     * Sets the rate limit; 0 turns event logging off
+     */
+    public static void setLinesPerSecond(int limit) {
+        linesPerSecond = limit;
+    }
+
+    /**
+     * Queues a line for the console unless the rate limit is reached
+     */
+    public static void log(String line) {
+        if (linesPerSecond == 0) {
+            return;
+        }
+        long second = System.nanoTime() / 1_000_000_000L;
+        if (second != currentSecond) {
+            // Racing threads may both reset; the limit is approximate by design
+            currentSecond = second;
+            issuedThisSecond.set(0);
+        }
+        if (issuedThisSecond.incrementAndGet() > linesPerSecond || !queue.offer(line)) {
+            suppressed.increment();
+        }
+    }
+
+    /**
+     * Lines dropped by the rate limit or a full queue since startup
+     */
+    public static long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    private static void printLoop() {
+        List<String> batch = new ArrayList<>();
+        long reported = 0;
+        while (true) {
+            try {
+                String line = queue.poll(1, TimeUnit.SECONDS);
+                if (line != null) {
+                    batch.add(line);
+                    queue.drainTo(batch);
+                    for (String queued : batch) {
+                        System.out.println(queued);
+                    }
+                    batch.clear();
+                }
+                long total = suppressed.sum();
+                if (total != reported && queue.isEmpty()) {
+                    System.out.println("(" + (total - reported) + " log lines suppressed)");
+                    reported = total;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
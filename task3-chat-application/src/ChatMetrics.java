@@ -0,0 +1,246 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counters and latency histograms
+ * Counters are LongAdders, which stripe updates across cells so the event
+ * loops and client threads rarely contend on the same cache line. Per-second
+ * rates are sampled once a second by a daemon thread; queue depths are
+ * gathered from the live connections only when read.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class ChatMetrics implements ChatMetricsMBean {
+    private static final long SAMPLE_MILLIS = 1000;
+
+    private final Collection<? extends ChatConnection> connections;
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+    private final LatencyHistogram fanOutNanos = new LatencyHistogram();
+    private final LatencyHistogram fanOutRecipients = new LatencyHistogram();
+    private volatile double messagesInPerSecond;
+    private volatile double messagesOutPerSecond;
+
+    /**
+     * Creates the metrics and starts the rate sampler
+     * @param connections Live connections, read for queue depths
+     */
+    public ChatMetrics(Collection<? extends ChatConnection> connections) {
+        this.connections = connections;
+        Thread sampler = new Thread(this::sampleRates, "chat-metrics");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    public void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    public void messageReceived() {
+        messagesIn.increment();
+    }
+
+    /**
+     * Counts lines handed to the socket, once per write batch
+     */
+    public void messagesWritten(int lines) {
+        messagesOut.add(lines);
+    }
+
+    public void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void slowDisconnect() {
+        slowDisconnects.increment();
+    }
+
+    /**
+     * Records one broadcast: time spent queueing it for every recipient
+     * @param nanos Elapsed time of the fan-out
+     * @param recipients Number of connections it was queued for
+     */
+    public void fanOut(long nanos, int recipients) {
+        fanOutNanos.record(nanos);
+        fanOutRecipients.record(recipients);
+    }
+
+    /**
+     * Wraps a blocking input stream so the bytes read through it are counted
+     */
+    public InputStream countReads(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesRead.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    bytesRead.add(count);
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Report for the /stats command
+     */
+    public List<String> report() {
+        long[] queues = queueDepths();
+        List<String> lines = new ArrayList<>();
+        lines.add("Connections: " + getActiveConnections() + " active, " + getConnectionsOpened() + " opened, "
+            + getSlowDisconnects() + " dropped as slow");
+        lines.add(String.format("Messages: in %d (%.1f/s), out %d (%.1f/s)",
+            getMessagesIn(), messagesInPerSecond, getMessagesOut(), messagesOutPerSecond));
+        lines.add(String.format("Bytes: read %,d, written %,d", getBytesRead(), getBytesWritten()));
+        lines.add("Fan-out time: " + fanOutNanos.summary(1000, "us"));
+        lines.add("Fan-out recipients: " + fanOutRecipients.summary(1, ""));
+        lines.add("Outbound queues: " + queues[0] + " lines queued, deepest " + queues[1]);
+        lines.add("Log lines suppressed: " + getLogLinesSuppressed());
+        return lines;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return connections.size();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getMessagesIn() {
+        return messagesIn.sum();
+    }
+
+    @Override
+    public long getMessagesOut() {
+        return messagesOut.sum();
+    }
+
+    @Override
+    public double getMessagesInPerSecond() {
+        return messagesInPerSecond;
+    }
+
+    @Override
+    public double getMessagesOutPerSecond() {
+        return messagesOutPerSecond;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getSlowDisconnects() {
+        return slowDisconnects.sum();
+    }
+
+    @Override
+    public long getFanOutP50Micros() {
+        return fanOutNanos.getValueAtPercentile(50) / 1000;
+    }
+
+    @Override
+    public long getFanOutP99Micros() {
+        return fanOutNanos.getValueAtPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getFanOutP999Micros() {
+        return fanOutNanos.getValueAtPercentile(99.9) / 1000;
+    }
+
+    @Override
+    public long getFanOutMaxMicros() {
+        return fanOutNanos.getMax() / 1000;
+    }
+
+    @Override
+    public long getQueuedLines() {
+        return queueDepths()[0];
+    }
+
+    @Override
+    public long getDeepestQueue() {
+        return queueDepths()[1];
+    }
+
+    @Override
+    public long getLogLinesSuppressed() {
+        return ChatLog.getSuppressedCount();
+    }
+
+    @Override
+    public void resetHistograms() {
+        fanOutNanos.reset();
+        fanOutRecipients.reset();
+    }
+
+    /**
+     * @return Total and largest outbound queue length over the live connections
+     */
+    private long[] queueDepths() {
+        long total = 0;
+        long deepest = 0;
+        for (ChatConnection connection : connections) {
+            int queued = connection.getQueuedLines();
+            total += queued;
+            deepest = Math.max(deepest, queued);
+        }
+        return new long[] {total, deepest};
+    }
+
+    private void sampleRates() {
+        long lastIn = 0;
+        long lastOut = 0;
+        long lastTime = System.nanoTime();
+        while (true) {
+            try {
+                Thread.sleep(SAMPLE_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long in = messagesIn.sum();
+            long out = messagesOut.sum();
+            long now = System.nanoTime();
+            double seconds = (now - lastTime) / 1e9;
+            messagesInPerSecond = (in - lastIn) / seconds;
+            messagesOutPerSecond = (out - lastOut) / seconds;
+            lastIn = in;
+            lastOut = out;
+            lastTime = now;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * JMX view of ChatMetrics, registered as ChatServer:type=Metrics
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public interface ChatMetricsMBean {
+
+    int getActiveConnections();
+
+    long getConnectionsOpened();
+
+    long getMessagesIn();
+
+    long getMessagesOut();
+
+    double getMessagesInPerSecond();
+
+    double getMessagesOutPerSecond();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getSlowDisconnects();
+
+    long getFanOutP50Micros();
+
+    long getFanOutP99Micros();
+
+    long getFanOutP999Micros();
+
+    long getFanOutMaxMicros();
+
+    long getQueuedLines();
+
+    long getDeepestQueue();
+
+    long getLogLinesSuppressed();
+
+    /**
+     * Clears the fan-out histograms
+     */
+    void resetHistograms();
+}
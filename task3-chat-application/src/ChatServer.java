@@ -1,48 +1,132 @@
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
  * Multithreaded Chat Server - Task 3
  * This server handles multiple client connections and broadcasts messages
- * 
+ *
+ * Usage: java ChatServer [--mode=threads|virtual|nio] [--loops=N] [--port=N]
+ *                        [--queue=N] [--slow=drop|disconnect]
+ *                        [--history=DIR|off] [--retain-mb=N] [--retain-hours=N]
+ *                        [--cluster-port=N] [--peers=host:port,...] [--node=ID]
+ *                        [--cluster-host=HOST] [--log-rate=N]
+ * threads  - one platform thread per client (default)
+ * virtual  - one virtual thread per client (JDK 21+, falls back to threads)
+ * nio      - N selector event loops shared by all clients (NioChatServer)
+ * Each client has an outbound queue of --queue lines; when a slow client's
+ * queue is full its oldest lines are dropped, or it is disconnected.
+ * Room broadcasts are kept in an on-disk ChatHistoryLog (default ./chat-history)
+ * and replayed to clients joining a room or asking for /history.
+ * Clients speak newline-delimited text, or the length-prefixed binary
+ * protocol in ChatFrames when they open with its handshake (see ChatClient).
+ * With --cluster-port the server joins a ClusterNode mesh through the --peers
+ * seeds, and room and private messages reach users on every node.
+ * ChatMetrics are published over JMX as ChatServer:type=Metrics and shown by
+ * the /stats command; connection and message events go to the console through
+ * ChatLog, at most --log-rate lines per second (0 turns them off).
+ *
  * @author Santosh
  * @version 1.0
  */
 public class ChatServer {
     private static final int PORT = 12345;
-    private static Set<ClientHandler> clients = ConcurrentHashMap.newKeySet();
-    private static ExecutorService threadPool = Executors.newCachedThreadPool();
-    
+    private static Set<ChatConnection> clients = ConcurrentHashMap.newKeySet();
+    private static final RoomRegistry rooms = new RoomRegistry();
+    private static ChatHistoryLog history;
+    private static ClusterNode cluster;
+    private static final ChatMetrics metrics = new ChatMetrics(clients);
+    private static ExecutorService threadPool;
+    private static int outboundCapacity = OutboundQueue.DEFAULT_CAPACITY;
+    private static OutboundQueue.SlowConsumerPolicy slowConsumerPolicy = OutboundQueue.SlowConsumerPolicy.DROP_OLDEST;
+
     /**
      * Main method to start the server
      */
     public static void main(String[] args) {
+        String mode = option(args, "mode", "threads");
+        int port = Integer.parseInt(option(args, "port", String.valueOf(PORT)));
+        outboundCapacity = Integer.parseInt(option(args, "queue", String.valueOf(outboundCapacity)));
+        if ("disconnect".equals(option(args, "slow", "drop"))) {
+            slowConsumerPolicy = OutboundQueue.SlowConsumerPolicy.DISCONNECT;
+        }
+
+        ChatLog.setLinesPerSecond(Integer.parseInt(option(args, "log-rate",
+            String.valueOf(ChatLog.DEFAULT_LINES_PER_SECOND))));
+        registerMetrics();
+
+        String historyDir = option(args, "history", "chat-history");
+        if (!"off".equals(historyDir)) {
+            long retainBytes = Long.parseLong(option(args, "retain-mb",
+                String.valueOf(ChatHistoryLog.DEFAULT_RETENTION_BYTES >> 20))) << 20;
+            long retainHours = Long.parseLong(option(args, "retain-hours",
+                String.valueOf(ChatHistoryLog.DEFAULT_RETENTION_AGE.toHours())));
+            try {
+                history = new ChatHistoryLog(Paths.get(historyDir), ChatHistoryLog.DEFAULT_SEGMENT_BYTES,
+                                             retainBytes, Duration.ofHours(retainHours));
+            } catch (IOException e) {
+                System.err.println("Error opening chat history, continuing without it: " + e.getMessage());
+            }
+        }
+
+        String clusterPort = option(args, "cluster-port", null);
+        if (clusterPort != null) {
+            String nodeId = option(args, "node", "node-" + clusterPort);
+            List<String> peers = new ArrayList<>();
+            for (String peer : option(args, "peers", "").split(",")) {
+                if (!peer.trim().isEmpty()) {
+                    peers.add(peer.trim());
+                }
+            }
+            try {
+                cluster = new ClusterNode(nodeId, option(args, "cluster-host", "localhost"),
+                                          Integer.parseInt(clusterPort), peers);
+                System.out.println("Cluster node " + nodeId + " on port " + clusterPort + ", seeds " + peers);
+            } catch (IOException e) {
+                System.err.println("Error starting cluster node, continuing standalone: " + e.getMessage());
+            }
+        }
+
         System.out.println("=== Chat Server Started ===");
-        System.out.println("Listening on port " + PORT);
-        
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            
+        System.out.println("Listening on port " + port + " (" + mode + " mode)");
+
+        if ("nio".equals(mode)) {
+            int loops = Integer.parseInt(option(args, "loops",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+            runNio(port, loops);
+            return;
+        }
+        threadPool = createExecutor(mode);
+
+        try (ServerSocket serverSocket = new ServerSocket(port, 1024)) {
+
             // Add shutdown hook for graceful shutdown
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("\nShutting down server...");
                 threadPool.shutdown();
+                closeCluster();
+                closeHistory();
                 try {
                     serverSocket.close();
                 } catch (IOException e) {
                     System.err.println("Error closing server socket: " + e.getMessage());
                 }
             }));
-            
+
             while (true) {
                 try {
                     Socket clientSocket = serverSocket.accept();
-                    ClientHandler clientHandler = new ClientHandler(clientSocket);
-                    clients.add(clientHandler);
+                    ClientHandler clientHandler = new ClientHandler(clientSocket, threadPool);
+                    addClient(clientHandler);
                     threadPool.execute(clientHandler);
-                    
-                    System.out.println("New client connected. Total clients: " + clients.size());
                 } catch (IOException e) {
                     System.err.println("Error accepting client connection: " + e.getMessage());
                 }
@@ -51,33 +135,90 @@ public class ChatServer {
             System.err.println("Server error: " + e.getMessage());
         }
     }
-    
+
     /**
-     * Broadcasts a message to all connected clients
+     * Sends a message to the members of one room
+     * @param room Room to deliver to
      * @param message Message to broadcast
-     * @param sender Client who sent the message
-     */
-    public static void broadcastMessage(String message, ClientHandler sender) {
-        Iterator<ClientHandler> iterator = clients.iterator();
-        while (iterator.hasNext()) {
-            ClientHandler client = iterator.next();
-            if (client != sender) {
-                if (!client.sendMessage(message)) {
-                    iterator.remove();
-                }
-            }
+     * @param sender Client who sent the message, excluded from delivery
+     */
+    public static void broadcastToRoom(RoomRegistry.Room room, String message, ChatConnection sender) {
+        byte[] line = ChatConnection.encode(message);
+        long start = System.nanoTime();
+        int recipients = room.broadcast(line, sender);
+        metrics.fanOut(System.nanoTime() - start, recipients);
+        if (history != null) {
+            history.append(room.getName(), line);
+        }
+        if (cluster != null) {
+            cluster.relayRoom(room.getName(), line);
+        }
+    }
+
+    /**
+     * Delivers a room message relayed by another cluster node to the local members
+     * @param room Room name
+     * @param line Encoded line
+     */
+    public static void deliverFromPeer(String room, byte[] line) {
+        RoomRegistry.Room local = rooms.get(room);
+        if (local != null) {
+            long start = System.nanoTime();
+            int recipients = local.broadcast(line, null);
+            metrics.fanOut(System.nanoTime() - start, recipients);
         }
+        if (history != null) {
+            history.append(room, line);
+        }
+    }
+
+    /**
+     * Server-wide counters and histograms
+     */
+    public static ChatMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Cluster membership and relay, or null when running standalone
+     */
+    public static ClusterNode getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Persistent room history, or null if it is disabled
+     */
+    public static ChatHistoryLog getHistory() {
+        return history;
+    }
+
+    /**
+     * Rooms and the username index
+     */
+    public static RoomRegistry getRooms() {
+        return rooms;
     }
-    
+
+    /**
+     * Registers a newly connected client
+     * @param client Client to add
+     */
+    public static void addClient(ChatConnection client) {
+        clients.add(client);
+        metrics.connectionOpened();
+        ChatLog.log("New client connected. Total clients: " + clients.size());
+    }
+
     /**
      * Removes a client from the server
      * @param client Client to remove
      */
-    public static void removeClient(ClientHandler client) {
+    public static void removeClient(ChatConnection client) {
         clients.remove(client);
-        System.out.println("Client disconnected. Total clients: " + clients.size());
+        ChatLog.log("Client disconnected. Total clients: " + clients.size());
     }
-    
+
     /**
      * Gets the count of connected clients
      * @return Number of connected clients
@@ -85,132 +226,283 @@ public class ChatServer {
     public static int getClientCount() {
         return clients.size();
     }
+
+    private static void registerMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(metrics, new ObjectName("ChatServer:type=Metrics"));
+        } catch (JMException e) {
+            System.err.println("Error registering metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    private static void closeCluster() {
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    private static void closeHistory() {
+        if (history != null) {
+            history.close();
+        }
+    }
+
+    /**
+     * Creates an outbound queue with the configured capacity and slow-consumer policy
+     */
+    static OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(outboundCapacity, slowConsumerPolicy);
+    }
+
+    private static void runNio(int port, int loops) {
+        try (NioChatServer server = new NioChatServer(port, loops)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(server)));
+            server.run();
+        } catch (IOException e) {
+            System.err.println("Server error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shutdown hook for the NIO engine
+     * Kept out of runNio so the hook does not close the try-with-resources variable itself.
+     */
+    private static void shutdown(NioChatServer server) {
+        System.out.println("\nShutting down server...");
+        server.close();
+        closeCluster();
+        closeHistory();
+    }
+
+    /**
+     * Executor for blocking client handlers
+     * Virtual threads are looked up reflectively so the server still builds
+     * and runs on JDKs that predate them.
+     */
+    private static ExecutorService createExecutor(String mode) {
+        if ("virtual".equals(mode)) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads need JDK 21+, using platform threads instead");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
 }
 
 /**
  * Handles individual client connections
+ * The handler's thread reads lines; a second task on the same executor drains
+ * the outbound queue to the socket, flushing once the queue is empty.
  */
-class ClientHandler implements Runnable {
+class ClientHandler implements Runnable, ChatConnection {
+    private static final int WRITE_BATCH = 64;
+
     private Socket socket;
-    private BufferedReader reader;
-    private PrintWriter writer;
-    private String username;
-    
-    public ClientHandler(Socket socket) {
+    private InputStream input;
+    private OutputStream output;
+    private final Executor executor;
+    private final OutboundQueue outbound = ChatServer.newOutboundQueue();
+    private final ChatSession session = new ChatSession(this);
+
+    public ClientHandler(Socket socket, Executor executor) {
         this.socket = socket;
+        this.executor = executor;
         try {
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writer = new PrintWriter(socket.getOutputStream(), true);
+            input = new BufferedInputStream(ChatServer.getMetrics().countReads(socket.getInputStream()));
+            output = new BufferedOutputStream(socket.getOutputStream());
         } catch (IOException e) {
             System.err.println("Error setting up client handler: " + e.getMessage());
         }
     }
-    
+
     @Override
     public void run() {
         try {
-            // Get username from client
-            writer.println("Enter your username:");
-            username = reader.readLine();
-            
-            if (username == null || username.trim().isEmpty()) {
-                username = "Anonymous";
-            }
-            
-            System.out.println("User '" + username + "' joined the chat");
-            
-            // Send welcome message
-            writer.println("Welcome to the chat, " + username + "!");
-            writer.println("Type 'QUIT' to leave the chat");
-            
-            // Broadcast join message
-            ChatServer.broadcastMessage(username + " joined the chat", this);
-            
-            String message;
-            while ((message = reader.readLine()) != null) {
-                if ("QUIT".equalsIgnoreCase(message.trim())) {
-                    break;
-                }
-                
-                // Handle special commands
-                if (message.startsWith("/")) {
-                    handleCommand(message);
-                } else {
-                    // Broadcast regular message
-                    String formattedMessage = "[" + username + "]: " + message;
-                    System.out.println(formattedMessage);
-                    ChatServer.broadcastMessage(formattedMessage, this);
-                }
+            executor.execute(this::writeLoop);
+            session.start();
+
+            if (readHandshake()) {
+                send(ChatFrames.UPGRADE);
+                readFrames();
+            } else {
+                readLines();
             }
-            
+
         } catch (IOException e) {
-            System.err.println("Error handling client " + username + ": " + e.getMessage());
+            System.err.println("Error handling client " + getUsername() + ": " + e.getMessage());
         } finally {
             disconnect();
         }
     }
-    
+
     /**
-     * Handles special commands
-     * @param command Command to handle
+     * Consumes ChatFrames.MAGIC if the client opened with it
+     * @return true for a binary client, false for a text client
      */
-    private void handleCommand(String command) {
-        String[] parts = command.split(" ", 2);
-        String cmd = parts[0].toLowerCase();
-        
-        switch (cmd) {
-            case "/help":
-                writer.println("Available commands:");
-                writer.println("/help - Show this help message");
-                writer.println("/users - Show connected users count");
-                writer.println("/time - Show current server time");
-                writer.println("QUIT - Leave the chat");
-                break;
-            case "/users":
-                writer.println("Connected users: " + ChatServer.getClientCount());
-                break;
-            case "/time":
-                writer.println("Server time: " + new Date());
+    private boolean readHandshake() throws IOException {
+        input.mark(1);
+        if (input.read() != ChatFrames.MAGIC[0]) {
+            input.reset();
+            return false;
+        }
+        byte[] magic = new byte[ChatFrames.MAGIC.length - 1];
+        new DataInputStream(input).readFully(magic);
+        if (!Arrays.equals(magic, 0, magic.length, ChatFrames.MAGIC, 1, ChatFrames.MAGIC.length)) {
+            throw new IOException("Bad protocol handshake");
+        }
+        return true;
+    }
+
+    private void readLines() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+        String message;
+        while ((message = reader.readLine()) != null) {
+            if (!session.onLine(message)) {
                 break;
-            default:
-                writer.println("Unknown command. Type /help for available commands.");
+            }
+        }
+    }
+
+    private void readFrames() throws IOException {
+        DataInputStream frames = new DataInputStream(input);
+        byte[] payload = new byte[1024];
+        while (true) {
+            int length;
+            try {
+                length = frames.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (length < 1 || length > ChatFrames.MAX_PAYLOAD_BYTES + 1) {
+                throw new IOException("Bad frame length " + length);
+            }
+            byte type = frames.readByte();
+            if (payload.length < length - 1) {
+                payload = new byte[Math.max(payload.length * 2, length - 1)];
+            }
+            frames.readFully(payload, 0, length - 1);
+            switch (type) {
+                case ChatFrames.LINE:
+                    String line = ChatFrames.checkLine(new String(payload, 0, length - 1, StandardCharsets.UTF_8));
+                    if (!session.onLine(line)) {
+                        return;
+                    }
+                    break;
+                case ChatFrames.BYE:
+                    return;
+                default:
+                    throw new IOException("Unexpected frame type " + type);
+            }
         }
     }
-    
+
     /**
-     * Sends a message to this client
-     * @param message Message to send
-     * @return true if successful, false otherwise
+     * Queues a line for this client's writer
+     * @param line Encoded line
+     * @return true if queued, false if the client is gone or was disconnected as too slow
      */
-    public boolean sendMessage(String message) {
-        try {
-            writer.println(message);
+    @Override
+    public boolean send(byte[] line) {
+        if (outbound.offer(line)) {
             return true;
-        } catch (Exception e) {
-            return false;
         }
+        if (outbound.close()) {
+            System.err.println("Disconnecting slow client " + getUsername());
+            ChatServer.getMetrics().slowDisconnect();
+            closeSocket();
+        }
+        return false;
     }
-    
+
+    /**
+     * Writes queued lines until the client disconnects; a write failure closes
+     * the socket, which ends the read loop as well. Lines queued after the
+     * ChatFrames.UPGRADE marker are written as MESSAGE frames.
+     */
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>(WRITE_BATCH);
+        ByteBuffer header = ByteBuffer.allocate(ChatFrames.HEADER_BYTES);
+        boolean framing = false;
+        try {
+            while (outbound.awaitAndDrainTo(batch, WRITE_BATCH) > 0) {
+                long bytes = 0;
+                for (byte[] line : batch) {
+                    if (line == ChatFrames.UPGRADE) {
+                        framing = true;
+                        writeFrame(header, ChatFrames.HELLO, new byte[] {ChatFrames.VERSION}, 1);
+                        bytes += ChatFrames.HEADER_BYTES + 1;
+                    } else if (framing) {
+                        writeFrame(header, ChatFrames.MESSAGE, line, line.length - 1);
+                        bytes += ChatFrames.HEADER_BYTES + line.length - 1;
+                    } else {
+                        output.write(line);
+                        bytes += line.length;
+                    }
+                }
+                ChatServer.getMetrics().messagesWritten(batch.size());
+                ChatServer.getMetrics().bytesWritten(bytes);
+                batch.clear();
+                if (outbound.isEmpty()) {
+                    output.flush();
+                }
+            }
+        } catch (IOException e) {
+            closeSocket();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeFrame(ByteBuffer header, byte type, byte[] payload, int length) throws IOException {
+        header.putInt(0, length + 1).put(4, type);
+        output.write(header.array());
+        output.write(payload, 0, length);
+    }
+
     /**
      * Disconnects the client
      */
     private void disconnect() {
         try {
             ChatServer.removeClient(this);
-            if (username != null) {
-                ChatServer.broadcastMessage(username + " left the chat", this);
-                System.out.println("User '" + username + "' left the chat");
-            }
-            
-            if (reader != null) reader.close();
-            if (writer != null) writer.close();
+            session.end();
+            outbound.close();
+
+            if (input != null) input.close();
             if (socket != null) socket.close();
         } catch (IOException e) {
             System.err.println("Error during disconnect: " + e.getMessage());
         }
     }
-    
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closing; the read loop reports the disconnect
+        }
+    }
+
+    @Override
     public String getUsername() {
-        return username;
+        return session.getUsername();
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getQueuedLines() {
+        return outbound.size();
+    }
+}
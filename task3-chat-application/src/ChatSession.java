@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The chat line protocol for one client: username prompt, commands and room messages
+ * Engines feed it one line at a time, so the blocking and the NIO server
+ * behave identically. Every client is in exactly one room, starting in the
+ * lobby; plain messages go to that room's members only.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class ChatSession {
+    private static final int ROOMS_LISTED = 10;
+    private static final int REPLAY_ON_JOIN = 10;
+    private static final int DEFAULT_HISTORY = 20;
+    private static final int MAX_HISTORY = 500;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final ChatConnection connection;
+    private String username;
+    private RoomRegistry.Room room;
+
+    public ChatSession(ChatConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Called once the connection is registered with the server
+     */
+    public void start() {
+        connection.sendMessage("Enter your username:");
+    }
+
+    /**
+     * Handles one line received from the client
+     * @param line Line without terminator
+     * @return false if the client asked to leave
+     */
+    public boolean onLine(String line) {
+        ChatServer.getMetrics().messageReceived();
+        if (username == null) {
+            login(line);
+            return true;
+        }
+
+        if ("QUIT".equalsIgnoreCase(line.trim())) {
+            return false;
+        }
+
+        // Handle special commands
+        if (line.startsWith("/")) {
+            handleCommand(line);
+        } else {
+            // Broadcast regular message to the current room
+            String formattedMessage = "[" + username + "]: " + line;
+            ChatLog.log(room + " " + formattedMessage);
+            ChatServer.broadcastToRoom(room, formattedMessage, connection);
+        }
+        return true;
+    }
+
+    /**
+     * Called once after the connection has been removed from the server
+     */
+    public void end() {
+        if (username != null) {
+            RoomRegistry rooms = ChatServer.getRooms();
+            rooms.leave(room, connection);
+            rooms.removeUser(username, connection);
+            publishUser();
+            ChatServer.broadcastToRoom(room, username + " left the chat", connection);
+            ChatLog.log("User '" + username + "' left the chat");
+        }
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Room the client is currently in, or null before login
+     */
+    public RoomRegistry.Room getRoom() {
+        return room;
+    }
+
+    private void login(String name) {
+        username = name.trim().isEmpty() ? "Anonymous" : name;
+
+        ChatLog.log("User '" + username + "' joined the chat");
+
+        RoomRegistry rooms = ChatServer.getRooms();
+        rooms.addUser(username, connection);
+        publishUser();
+        room = rooms.join(RoomRegistry.LOBBY, connection);
+
+        // Send welcome message
+        connection.sendMessage("Welcome to the chat, " + username + "!");
+        connection.sendMessage("You are in " + room + ". Type /help for commands");
+        connection.sendMessage("Type 'QUIT' to leave the chat");
+        replayHistory(REPLAY_ON_JOIN);
+
+        // Broadcast join message
+        ChatServer.broadcastToRoom(room, username + " joined the chat", connection);
+    }
+
+    /**
+     * Handles special commands
+     * @param command Command to handle
+     */
+    private void handleCommand(String command) {
+        String[] parts = command.split(" ", 2);
+        String cmd = parts[0].toLowerCase();
+
+        switch (cmd) {
+            case "/help":
+                connection.sendMessage("Available commands:");
+                connection.sendMessage("/help - Show this help message");
+                connection.sendMessage("/users - Show connected users per room");
+                connection.sendMessage("/join <room> - Switch to a room");
+                connection.sendMessage("/leave - Return to #" + RoomRegistry.LOBBY);
+                connection.sendMessage("/msg <user> <message> - Send a private message");
+                connection.sendMessage("/history [N] - Show the last N messages in this room");
+                connection.sendMessage("/time - Show current server time");
+                connection.sendMessage("/stats - Show server metrics");
+                connection.sendMessage("QUIT - Leave the chat");
+                break;
+            case "/users":
+                showUsers();
+                break;
+            case "/join":
+                String target = parts.length > 1 ? RoomRegistry.normalize(parts[1]) : null;
+                if (target == null) {
+                    connection.sendMessage("Usage: /join <room> (letters, digits, '-' or '_', up to 32)");
+                } else {
+                    switchRoom(target);
+                }
+                break;
+            case "/leave":
+                switchRoom(RoomRegistry.LOBBY);
+                break;
+            case "/msg":
+                sendPrivate(parts.length > 1 ? parts[1] : "");
+                break;
+            case "/history":
+                try {
+                    int count = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : DEFAULT_HISTORY;
+                    if (!replayHistory(Math.max(1, Math.min(MAX_HISTORY, count)))) {
+                        connection.sendMessage("No history for " + room);
+                    }
+                } catch (NumberFormatException e) {
+                    connection.sendMessage("Usage: /history [N]");
+                }
+                break;
+            case "/stats":
+                for (String stat : ChatServer.getMetrics().report()) {
+                    connection.sendMessage(stat);
+                }
+                break;
+            case "/time":
+                connection.sendMessage("Server time: " + new Date());
+                break;
+            default:
+                connection.sendMessage("Unknown command. Type /help for available commands.");
+        }
+    }
+
+    /**
+     * Sends the room's last messages from the history log
+     * @return true if anything was sent
+     */
+    private boolean replayHistory(int count) {
+        ChatHistoryLog history = ChatServer.getHistory();
+        if (history == null) {
+            return false;
+        }
+        try {
+            List<ChatHistoryLog.Message> messages = history.recent(room.getName(), count);
+            if (messages.isEmpty()) {
+                return false;
+            }
+            connection.sendMessage("--- Last " + messages.size() + " messages in " + room + " ---");
+            for (ChatHistoryLog.Message message : messages) {
+                LocalTime time = LocalTime.ofInstant(Instant.ofEpochMilli(message.getTimestamp()), ZoneId.systemDefault());
+                connection.sendMessage("[" + TIME.format(time) + "] " + message.getText());
+            }
+            connection.sendMessage("--- End of history ---");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error reading chat history: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void switchRoom(String name) {
+        if (room.getName().equals(name)) {
+            connection.sendMessage("You are already in " + room);
+            return;
+        }
+        RoomRegistry rooms = ChatServer.getRooms();
+        RoomRegistry.Room previous = room;
+        rooms.leave(previous, connection);
+        ChatServer.broadcastToRoom(previous, username + " left " + previous, connection);
+
+        room = rooms.join(name, connection);
+        connection.sendMessage("You are in " + room + " (" + room.size() + " users)");
+        replayHistory(REPLAY_ON_JOIN);
+        ChatServer.broadcastToRoom(room, username + " joined " + room, connection);
+    }
+
+    private void sendPrivate(String arguments) {
+        String[] parts = arguments.trim().split(" ", 2);
+        if (parts.length < 2 || parts[0].isEmpty()) {
+            connection.sendMessage("Usage: /msg <user> <message>");
+            return;
+        }
+        int delivered = 0;
+        byte[] line = ChatConnection.encode("[PM from " + username + "]: " + parts[1]);
+        for (ChatConnection recipient : ChatServer.getRooms().findUser(parts[0])) {
+            if (recipient.send(line)) {
+                delivered++;
+            }
+        }
+        ClusterNode cluster = ChatServer.getCluster();
+        if (cluster != null) {
+            delivered += cluster.sendPrivate(parts[0], line);
+        }
+        connection.sendMessage(delivered > 0
+            ? "[PM to " + parts[0] + "]: " + parts[1]
+            : "No such user: " + parts[0]);
+    }
+
+    /**
+     * Tells the other cluster nodes this username's connection count changed
+     */
+    private void publishUser() {
+        ClusterNode cluster = ChatServer.getCluster();
+        if (cluster != null) {
+            cluster.userChanged(username);
+        }
+    }
+
+    /**
+     * Reports the total, the current room and the largest rooms from the
+     * per-room counts, without walking the connection set
+     */
+    private void showUsers() {
+        connection.sendMessage("Connected users: " + ChatServer.getClientCount());
+        ClusterNode cluster = ChatServer.getCluster();
+        if (cluster != null) {
+            connection.sendMessage("Across the cluster: " + (ChatServer.getClientCount() + cluster.getRemoteUserCount())
+                + " on " + cluster.getNodeCount() + " nodes");
+        }
+        connection.sendMessage("In " + room + ": " + room.size());
+        List<Map.Entry<String, Integer>> rooms = ChatServer.getRooms().roomSizes();
+        for (int i = 0; i < Math.min(ROOMS_LISTED, rooms.size()); i++) {
+            connection.sendMessage("  #" + rooms.get(i).getKey() + ": " + rooms.get(i).getValue());
+        }
+        if (rooms.size() > ROOMS_LISTED) {
+            connection.sendMessage("  ... and " + (rooms.size() - ROOMS_LISTED) + " more rooms");
+        }
+    }
+}
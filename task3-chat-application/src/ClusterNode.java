@@ -0,0 +1,567 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Links ChatServer nodes into a cluster so users on different nodes can talk
+ * Every node keeps one TCP link to every other node. Nodes find each other
+ * through seed addresses and the node lists they gossip every few seconds;
+ * a node dials only nodes with a greater id, and if two links to the same
+ * node still appear, both ends keep the one dialed by the smaller id.
+ *
+ * Room messages, private messages and username counts are sent by the node
+ * they originate on straight to each peer and never forwarded, so a receiver
+ * gets one origin's frames over one TCP stream, in the order the origin
+ * published them. Each relayed frame carries the origin's sequence number and
+ * a receiver drops sequences it has already seen, so nothing is delivered
+ * twice when a link is replaced.
+ *
+ * Frame layout: byte type | fields (strings as int length + UTF-8)
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class ClusterNode implements Closeable {
+    private static final byte HELLO = 1;
+    private static final byte NODES = 2;
+    private static final byte USER = 3;
+    private static final byte ROOM = 4;
+    private static final byte PRIVATE = 5;
+
+    private static final int PEER_QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_FIELD_BYTES = 2 * NioChatServer.MAX_LINE_BYTES;
+    private static final long GOSSIP_INTERVAL_MILLIS = 2000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private final String nodeId;
+    private final String address;
+    private final long epoch = System.currentTimeMillis();
+    private final ServerSocket serverSocket;
+    private final Map<String, String> seeds = new ConcurrentHashMap<>();
+    private final Map<String, String> knownNodes = new ConcurrentHashMap<>();
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private final Map<String, Origin> origins = new ConcurrentHashMap<>();
+    private final Set<String> dialing = ConcurrentHashMap.newKeySet();
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final Thread gossiper;
+    private volatile boolean running = true;
+    private long sequence;
+
+    /**
+     * Starts a node: listens for peers and begins dialing the seeds
+     * @param nodeId Name unique within the cluster
+     * @param host Host name other nodes use to reach this one
+     * @param port Cluster port to listen on
+     * @param seedAddresses host:port of nodes to join through; may include this node
+     */
+    public ClusterNode(String nodeId, String host, int port, Collection<String> seedAddresses) throws IOException {
+        this.nodeId = nodeId;
+        this.address = host + ":" + port;
+        this.serverSocket = new ServerSocket(port);
+        for (String seed : seedAddresses) {
+            seeds.put(seed, "");
+        }
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        gossiper = new Thread(this::gossipLoop, "cluster-gossip");
+        gossiper.setDaemon(true);
+        gossiper.start();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Number of nodes currently reachable, including this one
+     */
+    public int getNodeCount() {
+        return peers.size() + 1;
+    }
+
+    /**
+     * Users logged in on the other nodes
+     */
+    public int getRemoteUserCount() {
+        int count = 0;
+        for (Peer peer : peers.values()) {
+            for (int users : peer.users.values()) {
+                count += users;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sends a room message to every peer
+     * @param room Room name
+     * @param line Encoded line as delivered locally
+     */
+    public synchronized void relayRoom(String room, byte[] line) {
+        if (peers.isEmpty()) {
+            return;
+        }
+        publish(encode(ROOM, ++sequence, room, line));
+    }
+
+    /**
+     * Sends a private message to the nodes where the user is logged in
+     * @return Number of nodes the message was sent to
+     */
+    public synchronized int sendPrivate(String username, byte[] line) {
+        byte[] frame = null;
+        int sent = 0;
+        for (Peer peer : peers.values()) {
+            if (peer.users.containsKey(username)) {
+                if (frame == null) {
+                    frame = encode(PRIVATE, ++sequence, username, line);
+                }
+                peer.send(frame);
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Tells every peer how many local connections now use a username
+     * The count is absolute and read under the publishing lock, so peers end
+     * up with the latest value whatever order logins and logouts race in.
+     */
+    public synchronized void userChanged(String username) {
+        if (!peers.isEmpty()) {
+            publish(encodeUser(username));
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        gossiper.interrupt();
+        closeQuietly(serverSocket);
+        for (Peer peer : peers.values()) {
+            peer.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterNode[id=" + nodeId + ", address=" + address + ", peers=" + peers.keySet()
+            + ", remoteUsers=" + getRemoteUserCount() + ", relayed=" + relayed.get()
+            + ", duplicates=" + duplicates.get() + "]";
+    }
+
+    private void publish(byte[] frame) {
+        for (Peer peer : peers.values()) {
+            peer.send(frame);
+        }
+        relayed.incrementAndGet();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                startLink(socket, false, null);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting cluster peer: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Periodically shares the known nodes and dials the ones not linked yet
+     */
+    private void gossipLoop() {
+        while (running) {
+            if (!peers.isEmpty()) {
+                byte[] nodes = encodeNodes();
+                for (Peer peer : peers.values()) {
+                    peer.send(nodes);
+                }
+            }
+            for (Map.Entry<String, String> seed : seeds.entrySet()) {
+                String id = seed.getValue();
+                if (!id.equals(nodeId) && !peers.containsKey(id)) {
+                    dial(seed.getKey(), true);
+                }
+            }
+            for (Map.Entry<String, String> node : knownNodes.entrySet()) {
+                if (nodeId.compareTo(node.getKey()) < 0 && !peers.containsKey(node.getKey())) {
+                    dial(node.getValue(), false);
+                }
+            }
+            try {
+                Thread.sleep(GOSSIP_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void dial(String peerAddress, boolean seed) {
+        if (!dialing.add(peerAddress)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                int colon = peerAddress.lastIndexOf(':');
+                Socket socket = new Socket();
+                try {
+                    socket.connect(new InetSocketAddress(peerAddress.substring(0, colon),
+                        Integer.parseInt(peerAddress.substring(colon + 1))), CONNECT_TIMEOUT_MILLIS);
+                } catch (IOException e) {
+                    // Not up yet; the next gossip round tries again
+                    closeQuietly(socket);
+                    return;
+                }
+                runLink(socket, true, seed ? peerAddress : null);
+            } catch (RuntimeException e) {
+                System.err.println("Bad cluster address " + peerAddress + ": " + e.getMessage());
+            } finally {
+                dialing.remove(peerAddress);
+            }
+        }, "cluster-link");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void startLink(Socket socket, boolean dialed, String seedAddress) {
+        Thread thread = new Thread(() -> runLink(socket, dialed, seedAddress), "cluster-link");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Exchanges HELLOs, registers the peer and reads its frames until the link drops
+     */
+    private void runLink(Socket socket, boolean dialed, String seedAddress) {
+        Peer peer = null;
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            out.write(encodeHello());
+            out.flush();
+
+            if (in.readByte() != HELLO) {
+                throw new IOException("Expected HELLO from cluster peer");
+            }
+            String peerId = readString(in);
+            long peerEpoch = in.readLong();
+            String peerAddress = readString(in);
+            if (seedAddress != null) {
+                seeds.put(seedAddress, peerId);
+            }
+            if (peerId.equals(nodeId)) {
+                return;
+            }
+            knownNodes.put(peerId, peerAddress);
+
+            peer = new Peer(peerId, socket, out, dialed);
+            if (!register(peer, peerEpoch)) {
+                peer = null;
+                return;
+            }
+            Thread writer = new Thread(peer::writeLoop, "cluster-writer-" + peerId);
+            writer.setDaemon(true);
+            writer.start();
+            readLoop(peer, in);
+        } catch (EOFException | SocketException e) {
+            // Link closed by either side
+        } catch (IOException e) {
+            System.err.println("Cluster link error: " + e.getMessage());
+        } finally {
+            if (peer != null) {
+                unregister(peer);
+            }
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Makes the peer current unless a preferred link to the same node exists,
+     * then sends it this node's view: known nodes and local username counts
+     * @return false if the link is redundant and should be closed
+     */
+    private synchronized boolean register(Peer peer, long peerEpoch) {
+        Peer existing = peers.get(peer.nodeId);
+        if (existing != null && (existing.isPreferred() || !peer.isPreferred())) {
+            return false;
+        }
+        peer.origin = origins.compute(peer.nodeId,
+            (id, origin) -> origin == null || origin.epoch != peerEpoch ? new Origin(peerEpoch) : origin);
+        peers.put(peer.nodeId, peer);
+        if (existing != null) {
+            existing.close();
+        }
+        System.out.println("Cluster link up: " + peer.nodeId + " (" + getNodeCount() + " nodes)");
+        peer.send(encodeNodes());
+        for (String username : ChatServer.getRooms().usernames()) {
+            peer.send(encodeUser(username));
+        }
+        return true;
+    }
+
+    private synchronized void unregister(Peer peer) {
+        peer.close();
+        if (peers.remove(peer.nodeId, peer)) {
+            System.out.println("Cluster link down: " + peer.nodeId + " (" + getNodeCount() + " nodes)");
+        }
+    }
+
+    private void readLoop(Peer peer, DataInputStream in) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            switch (type) {
+                case NODES:
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String id = readString(in);
+                        String nodeAddress = readString(in);
+                        if (!id.equals(nodeId)) {
+                            knownNodes.put(id, nodeAddress);
+                        }
+                    }
+                    break;
+                case USER: {
+                    long seq = in.readLong();
+                    String username = readString(in);
+                    int users = in.readInt();
+                    if (peer.accept(seq)) {
+                        if (users == 0) {
+                            peer.users.remove(username);
+                        } else {
+                            peer.users.put(username, users);
+                        }
+                    }
+                    break;
+                }
+                case ROOM: {
+                    long seq = in.readLong();
+                    String room = readString(in);
+                    byte[] line = readBytes(in);
+                    if (peer.accept(seq)) {
+                        ChatServer.deliverFromPeer(room, line);
+                    }
+                    break;
+                }
+                case PRIVATE: {
+                    long seq = in.readLong();
+                    String username = readString(in);
+                    byte[] line = readBytes(in);
+                    if (peer.accept(seq)) {
+                        for (ChatConnection recipient : ChatServer.getRooms().findUser(username)) {
+                            recipient.send(line);
+                        }
+                    }
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown cluster frame type " + type);
+            }
+        }
+    }
+
+    private byte[] encodeHello() {
+        Frame frame = new Frame(HELLO);
+        frame.string(nodeId).putLong(epoch);
+        return frame.string(address).toByteArray();
+    }
+
+    private byte[] encodeNodes() {
+        List<Map.Entry<String, String>> nodes = new ArrayList<>(knownNodes.entrySet());
+        Frame frame = new Frame(NODES);
+        frame.putInt(nodes.size() + 1);
+        frame.string(nodeId).string(address);
+        for (Map.Entry<String, String> node : nodes) {
+            frame.string(node.getKey()).string(node.getValue());
+        }
+        return frame.toByteArray();
+    }
+
+    /**
+     * Must be called holding this node's lock, which orders sequence numbers
+     */
+    private byte[] encodeUser(String username) {
+        Frame frame = new Frame(USER);
+        frame.putLong(++sequence);
+        frame.string(username).putInt(ChatServer.getRooms().findUser(username).size());
+        return frame.toByteArray();
+    }
+
+    private static byte[] encode(byte type, long seq, String key, byte[] line) {
+        Frame frame = new Frame(type);
+        frame.putLong(seq);
+        frame.string(key).bytes(line, line.length);
+        return frame.toByteArray();
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FIELD_BYTES) {
+            throw new IOException("Bad cluster field length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Already closing; nothing useful to report
+        }
+    }
+
+    /**
+     * Builds one frame in memory
+     */
+    private static class Frame {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Frame(byte type) {
+            bytes.write(type);
+        }
+
+        Frame string(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            return bytes(encoded, encoded.length);
+        }
+
+        Frame bytes(byte[] value, int length) {
+            putInt(length);
+            bytes.write(value, 0, length);
+            return this;
+        }
+
+        Frame putInt(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Frame putLong(long value) {
+            try {
+                out.writeLong(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Highest sequence delivered from one incarnation of a node
+     */
+    private static class Origin {
+        private final long epoch;
+        private long lastSequence;
+
+        Origin(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * A link to another node; frames are queued and written by the link's writer thread
+     */
+    private class Peer {
+        private final String nodeId;
+        private final Socket socket;
+        private final OutputStream out;
+        private final boolean dialed;
+        private final OutboundQueue outbound =
+            new OutboundQueue(PEER_QUEUE_CAPACITY, OutboundQueue.SlowConsumerPolicy.DISCONNECT);
+        private final Map<String, Integer> users = new ConcurrentHashMap<>();
+        private Origin origin;
+
+        Peer(String nodeId, Socket socket, OutputStream out, boolean dialed) {
+            this.nodeId = nodeId;
+            this.socket = socket;
+            this.out = out;
+            this.dialed = dialed;
+        }
+
+        /**
+         * True if this link was dialed by the smaller of the two node ids,
+         * the link both ends keep when they race to connect
+         */
+        boolean isPreferred() {
+            String local = ClusterNode.this.nodeId;
+            return dialed == local.compareTo(nodeId) < 0;
+        }
+
+        /**
+         * @return false for a sequence already delivered
+         */
+        boolean accept(long seq) {
+            synchronized (origin) {
+                if (seq <= origin.lastSequence) {
+                    duplicates.incrementAndGet();
+                    return false;
+                }
+                origin.lastSequence = seq;
+                return true;
+            }
+        }
+
+        void send(byte[] frame) {
+            if (!outbound.offer(frame) && outbound.close()) {
+                System.err.println("Disconnecting slow cluster peer " + nodeId);
+                closeQuietly(socket);
+            }
+        }
+
+        void writeLoop() {
+            List<byte[]> batch = new ArrayList<>(64);
+            try {
+                while (outbound.awaitAndDrainTo(batch, 64) > 0) {
+                    for (byte[] frame : batch) {
+                        out.write(frame);
+                    }
+                    batch.clear();
+                    if (outbound.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                closeQuietly(socket);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void close() {
+            outbound.close();
+            closeQuietly(socket);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Event-loop chat server engine built on java.nio Selectors
+ * A fixed number of loops each multiplex many non-blocking SocketChannels,
+ * so thousands of clients cost a few threads instead of one thread each.
+ * Lines are decoded and handed to the same ChatSession the blocking engine
+ * uses; outgoing lines are queued per client in a bounded OutboundQueue and
+ * packed by the client's loop into pooled direct buffers, one write per batch.
+ * Each loop reads into a single direct buffer shared by its connections, so
+ * the steady-state read and write paths allocate nothing per message.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class NioChatServer implements Closeable {
+
+    /** Longest line accepted before the client is dropped */
+    public static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int WRITE_BATCH = 64;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final BufferPool WRITE_BUFFERS = new BufferPool(WRITE_BUFFER_SIZE, 1024);
+
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a server and starts its event loops
+     * @param port Port to listen on
+     * @param eventLoops Number of selector threads
+     */
+    public NioChatServer(int port, int eventLoops) throws IOException {
+        if (eventLoops <= 0) {
+            throw new IllegalArgumentException("At least one event loop is required");
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) {
+            loops[i] = new EventLoop("chat-loop-" + i);
+            loops[i].start();
+        }
+    }
+
+    /**
+     * Accepts connections on the calling thread until the server is closed,
+     * spreading them round-robin over the event loops
+     */
+    public void run() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                EventLoop loop = loops[next];
+                next = (next + 1) % loops.length;
+                loop.execute(() -> loop.register(channel));
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                System.err.println("Error accepting client connection: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing server socket: " + e.getMessage());
+        }
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * One selector thread; other threads hand it work through execute()
+     */
+    private static class EventLoop extends Thread {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private volatile boolean open = true;
+
+        EventLoop(String name) throws IOException {
+            super(name);
+            this.selector = Selector.open();
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            open = false;
+            selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            try {
+                NioConnection connection = new NioConnection(this, channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                ChatServer.addClient(connection);
+                connection.session.start();
+            } catch (IOException e) {
+                System.err.println("Error registering client: " + e.getMessage());
+                closeQuietly(channel);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (open) {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                    while (selected.hasNext()) {
+                        SelectionKey key = selected.next();
+                        selected.remove();
+                        NioConnection connection = (NioConnection) key.attachment();
+                        // A bug in one client's handling must not take down every client on this loop
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                        } catch (RuntimeException e) {
+                            System.err.println("Error handling client " + connection.getUsername() + ": " + e);
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Event loop error: " + e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((NioConnection) key.attachment()).close();
+                }
+                closeQuietly(selector);
+            }
+        }
+    }
+
+    /**
+     * A client served by an event loop
+     * read() and flush() run on the loop thread; send may be called from any thread.
+     * The first bytes from the client choose the protocol: ChatFrames.MAGIC
+     * selects binary frames, anything else newline-delimited text.
+     */
+    private static class NioConnection implements ChatConnection {
+        private static final int UNDECIDED = 0;
+        private static final int TEXT = 1;
+        private static final int BINARY = 2;
+
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final ChatSession session = new ChatSession(this);
+        private final OutboundQueue outbound = ChatServer.newOutboundQueue();
+        private final ArrayDeque<byte[]> unpacked = new ArrayDeque<>(WRITE_BATCH);
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private SelectionKey key;
+
+        // Read side, loop thread only
+        private int protocol = UNDECIDED;
+        private int magicMatched;
+        private ByteArrayOutputStream partialLine;
+        private ByteBuffer partialFrames;
+
+        // Write side, loop thread only
+        private boolean framing;
+        private ByteBuffer pending;
+
+        NioConnection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean send(byte[] line) {
+            if (closed.get()) {
+                return false;
+            }
+            if (!outbound.offer(line)) {
+                if (outbound.close()) {
+                    System.err.println("Disconnecting slow client " + getUsername());
+                    ChatServer.getMetrics().slowDisconnect();
+                    loop.execute(this::close);
+                }
+                return false;
+            }
+            if (flushScheduled.compareAndSet(false, true)) {
+                if (Thread.currentThread() == loop) {
+                    flush();
+                } else {
+                    loop.execute(this::flush);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String getUsername() {
+            return session.getUsername();
+        }
+
+        @Override
+        public int getQueuedLines() {
+            return outbound.size() + unpacked.size();
+        }
+
+        /**
+         * Reads into the loop's shared direct buffer; only an incomplete
+         * trailing line or frame is copied into the connection
+         */
+        void read() {
+            ByteBuffer buffer = loop.readBuffer;
+            try {
+                buffer.clear();
+                int count = channel.read(buffer);
+                if (count < 0) {
+                    close();
+                    return;
+                }
+                ChatServer.getMetrics().bytesRead(count);
+                buffer.flip();
+                if (protocol == UNDECIDED && !negotiate(buffer)) {
+                    return;
+                }
+                boolean open = protocol == BINARY ? readFrames(buffer) : readLines(buffer);
+                if (!open) {
+                    close();
+                }
+            } catch (IOException e) {
+                System.err.println("Error handling client " + getUsername() + ": " + e.getMessage());
+                close();
+            }
+        }
+
+        /**
+         * Consumes the binary handshake if the client sent one
+         * @return true once the protocol is known and the rest of the buffer can be processed
+         */
+        private boolean negotiate(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (magicMatched == 0 && buffer.get(buffer.position()) != ChatFrames.MAGIC[0]) {
+                    protocol = TEXT;
+                    partialLine = new ByteArrayOutputStream();
+                    return true;
+                }
+                if (buffer.get() != ChatFrames.MAGIC[magicMatched++]) {
+                    throw new IOException("Bad protocol handshake");
+                }
+                if (magicMatched == ChatFrames.MAGIC.length) {
+                    protocol = BINARY;
+                    partialFrames = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                    send(ChatFrames.UPGRADE);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean readLines(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b != '\n') {
+                    partialLine.write(b);
+                    if (partialLine.size() > MAX_LINE_BYTES) {
+                        System.err.println("Line too long, dropping client " + getUsername());
+                        return false;
+                    }
+                    continue;
+                }
+                if (!session.onLine(takeLine())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean readFrames(ByteBuffer buffer) throws IOException {
+            ByteBuffer frames = buffer;
+            if (partialFrames.position() > 0) {
+                if (partialFrames.remaining() < buffer.remaining()) {
+                    ByteBuffer larger = ByteBuffer.allocate(
+                        Math.max(partialFrames.capacity() * 2, partialFrames.position() + buffer.remaining()));
+                    partialFrames.flip();
+                    partialFrames = larger.put(partialFrames);
+                }
+                frames = partialFrames.put(buffer).flip();
+            }
+            boolean open = ChatFrames.decode(frames, this::onFrame);
+            if (frames == partialFrames) {
+                partialFrames.compact();
+            } else if (open && frames.hasRemaining()) {
+                if (partialFrames.capacity() < frames.remaining()) {
+                    partialFrames = ByteBuffer.allocate(frames.remaining() * 2);
+                }
+                partialFrames.put(frames);
+            }
+            return open;
+        }
+
+        private boolean onFrame(byte type, ByteBuffer payload) throws IOException {
+            switch (type) {
+                case ChatFrames.LINE:
+                    return session.onLine(ChatFrames.checkLine(StandardCharsets.UTF_8.decode(payload).toString()));
+                case ChatFrames.BYE:
+                    return false;
+                default:
+                    throw new IOException("Unexpected frame type " + type);
+            }
+        }
+
+        /**
+         * Writes queued lines until the queue is empty or the socket is full;
+         * in the latter case OP_WRITE resumes the flush later
+         */
+        void flush() {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                while (true) {
+                    while (pending != null || pack()) {
+                        ChatServer.getMetrics().bytesWritten(channel.write(pending));
+                        if (pending.hasRemaining()) {
+                            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                            return;
+                        }
+                        WRITE_BUFFERS.release(pending);
+                        pending = null;
+                    }
+                    key.interestOps(SelectionKey.OP_READ);
+                    flushScheduled.set(false);
+                    // A sender may have queued a message after the last drain but before the reset
+                    if (outbound.isEmpty() || !flushScheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            } catch (IOException | CancelledKeyException e) {
+                close();
+            }
+        }
+
+        /**
+         * Packs as many queued lines as fit into one pooled direct buffer, as
+         * text or as MESSAGE frames, so a single write sends them all
+         * @return false if nothing was queued
+         */
+        private boolean pack() {
+            ByteBuffer buffer = null;
+            int lines = 0;
+            while (!unpacked.isEmpty() || outbound.drainTo(unpacked, WRITE_BATCH) > 0) {
+                byte[] line = unpacked.peekFirst();
+                int size = line == ChatFrames.UPGRADE ? ChatFrames.HEADER_BYTES + 1
+                    : framing ? ChatFrames.HEADER_BYTES + line.length - 1 : line.length;
+                if (buffer == null) {
+                    if (size > WRITE_BUFFERS.getBufferSize()) {
+                        // Larger than any pooled buffer: send it on its own
+                        unpacked.pollFirst();
+                        pending = oversize(line);
+                        ChatServer.getMetrics().messagesWritten(1);
+                        return true;
+                    }
+                    buffer = WRITE_BUFFERS.acquire();
+                }
+                if (buffer.remaining() < size) {
+                    break;
+                }
+                unpacked.pollFirst();
+                if (line == ChatFrames.UPGRADE) {
+                    // Lines queued before the marker went out as text, the rest are framed
+                    framing = true;
+                    ChatFrames.put(buffer, ChatFrames.HELLO, new byte[] {ChatFrames.VERSION}, 0, 1);
+                } else if (framing) {
+                    ChatFrames.put(buffer, ChatFrames.MESSAGE, line, 0, line.length - 1);
+                } else {
+                    buffer.put(line);
+                }
+                lines++;
+            }
+            if (buffer == null) {
+                return false;
+            }
+            ChatServer.getMetrics().messagesWritten(lines);
+            buffer.flip();
+            pending = buffer;
+            return true;
+        }
+
+        private ByteBuffer oversize(byte[] line) {
+            if (!framing) {
+                return ByteBuffer.wrap(line);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(ChatFrames.HEADER_BYTES + line.length - 1);
+            ChatFrames.put(buffer, ChatFrames.MESSAGE, line, 0, line.length - 1);
+            return buffer.flip();
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            ChatServer.removeClient(this);
+            session.end();
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(channel);
+            outbound.close();
+            if (pending != null) {
+                WRITE_BUFFERS.release(pending);
+                pending = null;
+            }
+        }
+
+        private String takeLine() {
+            byte[] bytes = partialLine.toByteArray();
+            partialLine.reset();
+            int length = bytes.length;
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Already closing; nothing useful to report
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Bounded queue of encoded lines waiting to be written to one client
+ * Lines are shared byte arrays encoded once per broadcast, so queueing a
+ * message for many clients copies nothing. When a slow client lets its queue
+ * fill up, the configured policy either drops its oldest lines or asks for
+ * the client to be disconnected; either way the sender never blocks.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class OutboundQueue {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * What to do with a client whose queue is full
+     */
+    public enum SlowConsumerPolicy {
+        /** Discard the oldest queued line to make room */
+        DROP_OLDEST,
+        /** Refuse the line; the caller disconnects the client */
+        DISCONNECT
+    }
+
+    private final ArrayDeque<byte[]> lines;
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+    private long dropped;
+    private boolean closed;
+
+    /**
+     * Creates a queue
+     * @param capacity Maximum number of queued lines
+     * @param policy What to do when the queue is full
+     */
+    public OutboundQueue(int capacity, SlowConsumerPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.lines = new ArrayDeque<>(Math.min(capacity, 64));
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Queues a line without blocking
+     * @param line Encoded line; must not be modified afterwards
+     * @return false if the queue is closed, or full under the DISCONNECT policy
+     */
+    public synchronized boolean offer(byte[] line) {
+        if (closed) {
+            return false;
+        }
+        if (lines.size() == capacity) {
+            if (policy == SlowConsumerPolicy.DISCONNECT) {
+                return false;
+            }
+            lines.pollFirst();
+            dropped++;
+        }
+        lines.addLast(line);
+        if (lines.size() == 1) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Moves up to max queued lines into the collection without blocking
+     * @return Number of lines moved
+     */
+    public synchronized int drainTo(Collection<byte[]> target, int max) {
+        int count = 0;
+        byte[] line;
+        while (count < max && (line = lines.pollFirst()) != null) {
+            target.add(line);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Waits until at least one line is queued, then moves up to max lines into the collection
+     * @return Number of lines moved, or 0 once the queue is closed and empty
+     */
+    public synchronized int awaitAndDrainTo(Collection<byte[]> target, int max) throws InterruptedException {
+        while (lines.isEmpty() && !closed) {
+            wait();
+        }
+        return drainTo(target, max);
+    }
+
+    public synchronized boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public synchronized int size() {
+        return lines.size();
+    }
+
+    /**
+     * Lines discarded by the DROP_OLDEST policy
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Rejects further lines, discards queued ones and wakes a waiting writer
+     * @return true if this call closed the queue, false if it was already closed
+     */
+    public synchronized boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        lines.clear();
+        notifyAll();
+        return true;
+    }
+}
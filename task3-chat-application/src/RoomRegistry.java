@@ -0,0 +1,176 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Chat rooms and the username index, kept in sharded concurrent maps
+ * A room is found by hashing its name to one shard, and holds its own member
+ * set, so delivering a message costs one lookup plus one send per member of
+ * that room, regardless of how many clients are connected overall. Membership
+ * changes for a room are atomic within its shard; empty rooms other than the
+ * lobby are removed.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class RoomRegistry {
+
+    public static final String LOBBY = "lobby";
+    public static final int DEFAULT_SHARDS = 16;
+    private static final Pattern ROOM_NAME = Pattern.compile("[a-z0-9_-]{1,32}");
+
+    private final Map<String, Room>[] shards;
+    private final Map<String, Set<ChatConnection>> users = new ConcurrentHashMap<>();
+
+    public RoomRegistry() {
+        this(DEFAULT_SHARDS);
+    }
+
+    /**
+     * Creates a registry
+     * @param shardCount Number of independent room maps
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RoomRegistry(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        shards = new Map[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Normalises a user-supplied room name
+     * @param name Name as typed, with or without a leading '#'
+     * @return Lower-case room name, or null if it is not valid
+     */
+    public static String normalize(String name) {
+        String room = name.trim().toLowerCase();
+        if (room.startsWith("#")) {
+            room = room.substring(1);
+        }
+        return ROOM_NAME.matcher(room).matches() ? room : null;
+    }
+
+    /**
+     * Adds a client to a room, creating the room if needed
+     * @return The room joined
+     */
+    public Room join(String name, ChatConnection client) {
+        return shard(name).compute(name, (key, room) -> {
+            if (room == null) {
+                room = new Room(key);
+            }
+            room.members.add(client);
+            return room;
+        });
+    }
+
+    /**
+     * Removes a client from a room, dropping the room once it is empty
+     */
+    public void leave(Room room, ChatConnection client) {
+        shard(room.name).computeIfPresent(room.name, (key, current) -> {
+            current.members.remove(client);
+            return current.members.isEmpty() && !LOBBY.equals(key) ? null : current;
+        });
+    }
+
+    /**
+     * Room with the given name, or null if nobody is in it
+     */
+    public Room get(String name) {
+        return shard(name).get(name);
+    }
+
+    /**
+     * Snapshot of room sizes, largest room first
+     * Sizes are read once, since members keep joining while the list is built.
+     */
+    public List<Map.Entry<String, Integer>> roomSizes() {
+        List<Map.Entry<String, Integer>> sizes = new ArrayList<>();
+        for (Map<String, Room> shard : shards) {
+            for (Room room : shard.values()) {
+                sizes.add(new AbstractMap.SimpleImmutableEntry<>(room.name, room.size()));
+            }
+        }
+        sizes.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        return sizes;
+    }
+
+    public void addUser(String username, ChatConnection client) {
+        users.computeIfAbsent(username, name -> ConcurrentHashMap.newKeySet()).add(client);
+    }
+
+    public void removeUser(String username, ChatConnection client) {
+        users.computeIfPresent(username, (name, clients) -> {
+            clients.remove(client);
+            return clients.isEmpty() ? null : clients;
+        });
+    }
+
+    /**
+     * Usernames with at least one connection logged in
+     */
+    public Set<String> usernames() {
+        return users.keySet();
+    }
+
+    /**
+     * Connections logged in under a username; usernames are not unique
+     */
+    public Set<ChatConnection> findUser(String username) {
+        Set<ChatConnection> clients = users.get(username);
+        return clients == null ? Collections.emptySet() : clients;
+    }
+
+    private Map<String, Room> shard(String name) {
+        return shards[(name.hashCode() & 0x7fffffff) % shards.length];
+    }
+
+    /**
+     * A named room and its members
+     */
+    public static class Room {
+        private final String name;
+        private final Set<ChatConnection> members = ConcurrentHashMap.newKeySet();
+
+        Room(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int size() {
+            return members.size();
+        }
+
+        /**
+         * Queues an encoded line for every member except the sender
+         * @return Number of members it was queued for
+         */
+        public int broadcast(byte[] line, ChatConnection sender) {
+            int recipients = 0;
+            for (ChatConnection member : members) {
+                if (member != sender && member.send(line)) {
+                    recipients++;
+                }
+            }
+            return recipients;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + name;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collaborative filtering served from a SimilarityIndex
+ * Predictions and recommendations read only the precomputed top-K
+ * neighbours, so a request touches k rows of the matrix instead of
+ * correlating the user against everyone. The matrix and index must be the
+ * same snapshot version.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class CollaborativeFilter {
+
+    private final RatingMatrix matrix;
+    private final SimilarityIndex index;
+
+    public CollaborativeFilter(RatingMatrix matrix, SimilarityIndex index) {
+        if (matrix.getVersion() != index.getVersion()) {
+            throw new IllegalArgumentException("Index version " + index.getVersion()
+                + " does not match matrix version " + matrix.getVersion());
+        }
+        this.matrix = matrix;
+        this.index = index;
+    }
+
+    public RatingMatrix getMatrix() {
+        return matrix;
+    }
+
+    public SimilarityIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * User-based prediction: the user's mean plus the similarity-weighted
+     * deviations of the neighbours who rated the product
+     * @return Predicted rating; the user's mean if no neighbour rated it
+     */
+    public double predictUserBased(int user, int item) {
+        double sum = 0;
+        double weights = 0;
+        for (int n = 0; n < index.userNeighborCount(user); n++) {
+            int other = index.userNeighbor(user, n);
+            float rating = matrix.getRating(other, item);
+            if (!Float.isNaN(rating)) {
+                float sim = index.userSimilarity(user, n);
+                sum += sim * (rating - matrix.userMean(other));
+                weights += Math.abs(sim);
+            }
+        }
+        return weights == 0 ? matrix.userMean(user) : matrix.userMean(user) + sum / weights;
+    }
+
+    /**
+     * Item-based prediction: the user's mean plus their similarity-weighted
+     * deviations on the neighbours of the product they rated
+     * @return Predicted rating; the user's mean if they rated no neighbour
+     */
+    public double predictItemBased(int user, int item) {
+        double mean = matrix.userMean(user);
+        double sum = 0;
+        double weights = 0;
+        for (int n = 0; n < index.itemNeighborCount(item); n++) {
+            float rating = matrix.getRating(user, index.itemNeighbor(item, n));
+            if (!Float.isNaN(rating)) {
+                float sim = index.itemSimilarity(item, n);
+                sum += sim * (rating - mean);
+                weights += Math.abs(sim);
+            }
+        }
+        return weights == 0 ? mean : mean + sum / weights;
+    }
+
+    /**
+     * Top products the user has not rated, by user-based prediction
+     * @return Best first; empty for an unknown user
+     */
+    public List<Recommendation> recommend(String userId, int count) {
+        int user = matrix.userIndex(userId);
+        if (user < 0 || count <= 0) {
+            return Collections.emptyList();
+        }
+        return recommend(user, count, new Scratch(matrix.getItemCount()));
+    }
+
+    /**
+     * Top products the user has not rated, reusing the caller's scratch space
+     */
+    public List<Recommendation> recommend(int user, int count, Scratch scratch) {
+        accumulate(user, scratch);
+        float mean = matrix.userMean(user);
+        TopK top = new TopK(count);
+        for (int i = 0; i < scratch.touchedCount; i++) {
+            int item = scratch.touched[i];
+            if (scratch.weights[item] > 0) {
+                top.offer(item, (float) (mean + scratch.sums[item] / scratch.weights[item]));
+            }
+        }
+        return toList(top);
+    }
+
+    /**
+     * Top products by a weighted blend of the neighbourhood prediction and a
+     * factor model's; products no neighbour rated are scored by the model alone
+     * @param modelWeight Share of the model's prediction, 0 to 1
+     */
+    public List<Recommendation> recommend(int user, int count, Scratch scratch,
+                                          MatrixFactorization model, double modelWeight) {
+        if (model == null || modelWeight <= 0 || !model.covers(user, 0)) {
+            return recommend(user, count, scratch);
+        }
+        accumulate(user, scratch);
+        float mean = matrix.userMean(user);
+        TopK top = new TopK(count);
+        for (int item = 0; item < matrix.getItemCount(); item++) {
+            if (scratch.isExcluded(item)) {
+                continue;
+            }
+            double predicted = model.predict(user, item);
+            double neighbours = scratch.weights[item] > 0 ? mean + scratch.sums[item] / scratch.weights[item] : predicted;
+            top.offer(item, (float) (modelWeight * predicted + (1 - modelWeight) * neighbours));
+        }
+        return toList(top);
+    }
+
+    /**
+     * Sums the neighbours' deviations per product, skipping products the user rated
+     */
+    private void accumulate(int user, Scratch scratch) {
+        scratch.begin(matrix.getItemCount());
+        for (int p = matrix.rowStart(user); p < matrix.rowEnd(user); p++) {
+            scratch.exclude(matrix.itemAt(p));
+        }
+        for (int n = 0; n < index.userNeighborCount(user); n++) {
+            int other = index.userNeighbor(user, n);
+            float sim = index.userSimilarity(user, n);
+            float mean = matrix.userMean(other);
+            for (int p = matrix.rowStart(other); p < matrix.rowEnd(other); p++) {
+                scratch.add(matrix.itemAt(p), sim * (matrix.ratingAt(p) - mean), Math.abs(sim));
+            }
+        }
+    }
+
+    /**
+     * Products most similar to one product
+     * @return Best first, scored by similarity; empty for an unknown product
+     */
+    public List<Recommendation> similarProducts(String productId, int count) {
+        int item = matrix.itemIndex(productId);
+        if (item < 0) {
+            return Collections.emptyList();
+        }
+        int size = Math.min(count, index.itemNeighborCount(item));
+        List<Recommendation> similar = new ArrayList<>(size);
+        for (int n = 0; n < size; n++) {
+            similar.add(new Recommendation(matrix.itemId(index.itemNeighbor(item, n)), index.itemSimilarity(item, n)));
+        }
+        return similar;
+    }
+
+    private List<Recommendation> toList(TopK top) {
+        top.sortDescending();
+        List<Recommendation> list = new ArrayList<>(top.size());
+        for (int n = 0; n < top.size(); n++) {
+            list.add(new Recommendation(matrix.itemId(top.id(n)), top.score(n)));
+        }
+        return list;
+    }
+
+    /**
+     * Per-product accumulators for one request, reset sparsely so a worker can reuse them
+     */
+    public static final class Scratch {
+        private double[] sums = new double[0];
+        private double[] weights = new double[0];
+        private int[] marks = new int[0];
+        private int[] touched = new int[0];
+        private int touchedCount;
+        private int generation;
+
+        public Scratch(int items) {
+            begin(items);
+        }
+
+        void begin(int items) {
+            for (int i = 0; i < touchedCount; i++) {
+                sums[touched[i]] = 0;
+                weights[touched[i]] = 0;
+            }
+            if (sums.length < items) {
+                sums = new double[items];
+                weights = new double[items];
+                marks = new int[items];
+                touched = new int[items];
+                generation = 0;
+            }
+            touchedCount = 0;
+            // Odd marks exclude a product for this request, even marks mean touched
+            generation += 2;
+            if (generation < 0) {
+                Arrays.fill(marks, 0);
+                generation = 2;
+            }
+        }
+
+        void exclude(int item) {
+            marks[item] = generation + 1;
+        }
+
+        boolean isExcluded(int item) {
+            return marks[item] == generation + 1;
+        }
+
+        void add(int item, double sum, double weight) {
+            if (marks[item] == generation + 1) {
+                return;
+            }
+            if (marks[item] != generation) {
+                marks[item] = generation;
+                touched[touchedCount++] = item;
+            }
+            sums[item] += sum;
+            weights[item] += weight;
+        }
+    }
+}
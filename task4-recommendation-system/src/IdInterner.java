@@ -0,0 +1,64 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps string IDs to dense ints 0..size-1 and back
+ * Interning a new ID is synchronized and append-only; IDs that are already
+ * interned are found without locking, and an index never changes meaning.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class IdInterner {
+
+    private final ConcurrentHashMap<String, Integer> indexes = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[16];
+    private volatile int size;
+
+    /**
+     * Returns the index of an ID, assigning the next free one if it is new
+     */
+    public int intern(String id) {
+        Integer index = indexes.get(id);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            index = indexes.get(id);
+            if (index != null) {
+                return index;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int next = size;
+            ids[next] = id;
+            // Publish the ID before the index, so idOf() accepts any index indexOf() returns
+            size = next + 1;
+            indexes.put(id, next);
+            return next;
+        }
+    }
+
+    /**
+     * Index of an ID, or -1 if it was never interned
+     */
+    public int indexOf(String id) {
+        Integer index = indexes.get(id);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * ID interned under an index
+     */
+    public String idOf(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No ID with index " + index);
+        }
+        return ids[index];
+    }
+
+    public int size() {
+        return size;
+    }
+}
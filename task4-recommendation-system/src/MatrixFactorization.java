@@ -0,0 +1,246 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Latent-factor model of the ratings, trained by parallel SGD
+ * A rating is predicted as mean + userBias + productBias + p(u) . q(i),
+ * with factors stored row after row in flat float arrays. Training shuffles
+ * the users every epoch and lets each worker take a slice of them, all
+ * updating the shared arrays without locks (Hogwild): a user belongs to one
+ * worker, two workers rarely touch the same product at once, and an
+ * occasional lost update does not hurt convergence. Joining the workers
+ * publishes the final arrays.
+ *
+ * Serving scores every product with one dot product each, over contiguous
+ * float arrays the JIT compiler can vectorize.
+ *
+ * A model trained on one snapshot keeps working with later ones, since
+ * user and product indexes never change meaning; users and products added
+ * afterwards simply have no factors yet.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public final class MatrixFactorization {
+
+    public static final int DEFAULT_FACTORS = 16;
+    public static final int DEFAULT_EPOCHS = 30;
+    public static final float DEFAULT_LEARNING_RATE = 0.005f;
+    public static final float DEFAULT_REGULARIZATION = 0.05f;
+    public static final long DEFAULT_SEED = 1;
+    private static final float LEARNING_RATE_DECAY = 0.92f;
+
+    private final int factors;
+    private final int userCount;
+    private final int itemCount;
+    private final long version;
+    private final float mean;
+    private final float[] userBiases;
+    private final float[] itemBiases;
+    private final float[] userFactors;
+    private final float[] itemFactors;
+
+    private MatrixFactorization(RatingMatrix matrix, int factors, long seed) {
+        this.factors = factors;
+        this.userCount = matrix.getUserCount();
+        this.itemCount = matrix.getItemCount();
+        this.version = matrix.getVersion();
+        double sum = 0;
+        for (int u = 0; u < userCount; u++) {
+            for (int p = matrix.rowStart(u); p < matrix.rowEnd(u); p++) {
+                sum += matrix.ratingAt(p);
+            }
+        }
+        this.mean = matrix.getRatingCount() == 0 ? 0 : (float) (sum / matrix.getRatingCount());
+        this.userBiases = new float[userCount];
+        this.itemBiases = new float[itemCount];
+        this.userFactors = new float[userCount * factors];
+        this.itemFactors = new float[itemCount * factors];
+        Random random = new Random(seed);
+        for (int i = 0; i < userFactors.length; i++) {
+            userFactors[i] = (float) random.nextGaussian() * 0.1f;
+        }
+        for (int i = 0; i < itemFactors.length; i++) {
+            itemFactors[i] = (float) random.nextGaussian() * 0.1f;
+        }
+    }
+
+    /**
+     * Trains a model with the default settings
+     */
+    public static MatrixFactorization train(RatingMatrix matrix, ForkJoinPool pool) {
+        return train(matrix, DEFAULT_FACTORS, DEFAULT_EPOCHS, DEFAULT_LEARNING_RATE, DEFAULT_REGULARIZATION,
+                     pool, DEFAULT_SEED);
+    }
+
+    /**
+     * Trains a model on every rating of a snapshot
+     * @param factors Latent dimensions per user and product
+     * @param epochs Passes over the ratings
+     * @param learningRate Initial SGD step, decayed every epoch
+     * @param regularization L2 penalty on biases and factors
+     * @param pool Workers; each epoch is split into one slice of users per worker
+     */
+    public static MatrixFactorization train(RatingMatrix matrix, int factors, int epochs, float learningRate,
+                                            float regularization, ForkJoinPool pool, long seed) {
+        if (factors <= 0 || epochs < 0) {
+            throw new IllegalArgumentException("Factors must be positive and epochs not negative");
+        }
+        MatrixFactorization model = new MatrixFactorization(matrix, factors, seed);
+        int users = matrix.getUserCount();
+        int[] order = new int[users];
+        for (int u = 0; u < users; u++) {
+            order[u] = u;
+        }
+
+        Random random = new Random(seed);
+        int workers = pool.getParallelism();
+        float rate = learningRate;
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (int i = users - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            float step = rate;
+            List<Callable<Void>> slices = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                int from = (int) ((long) users * w / workers);
+                int to = (int) ((long) users * (w + 1) / workers);
+                slices.add(() -> {
+                    model.descend(matrix, order, from, to, step, regularization);
+                    return null;
+                });
+            }
+            pool.invokeAll(slices);
+            rate *= LEARNING_RATE_DECAY;
+        }
+        return model;
+    }
+
+    public int getFactors() {
+        return factors;
+    }
+
+    /**
+     * Snapshot version the model was trained on
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * True if the model has factors for this user and product
+     */
+    public boolean covers(int user, int item) {
+        return user < userCount && item < itemCount;
+    }
+
+    /**
+     * Predicted rating; the global mean plus what biases are known for unseen users or products
+     */
+    public float predict(int user, int item) {
+        float prediction = mean;
+        if (user < userCount) {
+            prediction += userBiases[user];
+        }
+        if (item < itemCount) {
+            prediction += itemBiases[item];
+        }
+        if (user < userCount && item < itemCount) {
+            prediction += dot(user * factors, item * factors);
+        }
+        return prediction;
+    }
+
+    /**
+     * Offers every product the user has not rated in the snapshot, scored by prediction
+     */
+    public void recommend(RatingMatrix matrix, int user, TopK top) {
+        if (user >= userCount) {
+            return;
+        }
+        float[] vector = new float[factors];
+        System.arraycopy(userFactors, user * factors, vector, 0, factors);
+        float base = mean + userBiases[user];
+        int rated = matrix.rowStart(user);
+        int ratedEnd = matrix.rowEnd(user);
+        for (int item = 0; item < itemCount; item++) {
+            // The row is sorted by product, so skipping rated products is a merge
+            while (rated < ratedEnd && matrix.itemAt(rated) < item) {
+                rated++;
+            }
+            if (rated < ratedEnd && matrix.itemAt(rated) == item) {
+                continue;
+            }
+            float score = base + itemBiases[item];
+            int offset = item * factors;
+            for (int f = 0; f < factors; f++) {
+                score += vector[f] * itemFactors[offset + f];
+            }
+            top.offer(item, score);
+        }
+    }
+
+    /**
+     * Root mean squared error over held-out ratings
+     */
+    public double rmse(int[] users, int[] items, float[] ratings) {
+        double sum = 0;
+        for (int i = 0; i < ratings.length; i++) {
+            double error = ratings[i] - predict(users[i], items[i]);
+            sum += error * error;
+        }
+        return Math.sqrt(sum / ratings.length);
+    }
+
+    /**
+     * Heap bytes held by biases and factors
+     */
+    public long memoryBytes() {
+        return 4L * (userBiases.length + itemBiases.length + userFactors.length + itemFactors.length);
+    }
+
+    @Override
+    public String toString() {
+        return "MatrixFactorization[version=" + version + ", users=" + userCount + ", products=" + itemCount
+            + ", factors=" + factors + ", " + memoryBytes() / 1024 + " KB]";
+    }
+
+    /**
+     * One SGD step per rating of the users in order[from..to)
+     * A user's ratings are visited together, so their factors stay in cache.
+     */
+    private void descend(RatingMatrix matrix, int[] order, int from, int to, float rate, float regularization) {
+        for (int i = from; i < to; i++) {
+            int user = order[i];
+            int userOffset = user * factors;
+            for (int position = matrix.rowStart(user); position < matrix.rowEnd(user); position++) {
+                int item = matrix.itemAt(position);
+                int itemOffset = item * factors;
+                float error = matrix.ratingAt(position)
+                    - (mean + userBiases[user] + itemBiases[item] + dot(userOffset, itemOffset));
+                userBiases[user] += rate * (error - regularization * userBiases[user]);
+                itemBiases[item] += rate * (error - regularization * itemBiases[item]);
+                for (int f = 0; f < factors; f++) {
+                    float p = userFactors[userOffset + f];
+                    float q = itemFactors[itemOffset + f];
+                    userFactors[userOffset + f] = p + rate * (error * q - regularization * p);
+                    itemFactors[itemOffset + f] = q + rate * (error * p - regularization * q);
+                }
+            }
+        }
+    }
+
+    private float dot(int userOffset, int itemOffset) {
+        float sum = 0;
+        for (int f = 0; f < factors; f++) {
+            sum += userFactors[userOffset + f] * itemFactors[itemOffset + f];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,345 @@
+import java.util.Arrays;
+
+/**
+ * Approximate nearest-neighbour candidates by MinHash locality-sensitive hashing
+ * Each user (or product) is reduced to a MinHash signature of the set of
+ * products it rated (or users who rated it). The signature is cut into
+ * bands of rows values; two sets land in the same bucket of a band with
+ * probability J^rows, where J is their Jaccard overlap, so they become
+ * candidates with probability 1 - (1 - J^rows)^bands. More bands raise
+ * recall, more rows per band shrink the candidate set and make queries
+ * faster. Candidates are then re-ranked exactly with the same similarity
+ * as SimilarityIndex, so approximation only ever drops neighbours, it
+ * never mis-scores them. When more rows collide than maxCandidates allows,
+ * the ones colliding in the most bands are kept.
+ *
+ * The query cost is bounded by maxCandidates instead of by the popularity
+ * of the products a user rated, which is what the exact search in
+ * SimilarityIndex pays. On sparse data with short columns the exact search
+ * is already cheaper; `java RecommendationBenchmark ann` reports both.
+ * SimilarityIndex.buildApproximate() and
+ * RecommendationService.setApproximateNeighbors() build the served index
+ * from these candidates.
+ *
+ * Buckets are stored per band as one sorted long[] of (band hash, row)
+ * pairs, so a lookup is a binary search and a scan.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public final class MinHashIndex {
+
+    public static final int DEFAULT_BANDS = 32;
+    public static final int DEFAULT_ROWS = 2;
+    public static final int DEFAULT_MAX_CANDIDATES = 1000;
+
+    private static final ThreadLocal<Query> QUERY = ThreadLocal.withInitial(Query::new);
+
+    private final boolean byUser;
+    private final int bands;
+    private final int rows;
+    private final int maxCandidates;
+    private final int size;
+    private final long version;
+    private final long[] seeds;
+    private final int idBits;
+    private final long[][] buckets;
+    private final long[] keys;
+    private final boolean[] present;
+
+    private MinHashIndex(RatingMatrix matrix, boolean byUser, int bands, int rows, int maxCandidates, long seed) {
+        if (bands <= 0 || rows <= 0 || maxCandidates <= 0) {
+            throw new IllegalArgumentException("Bands, rows and candidate limit must be positive");
+        }
+        this.byUser = byUser;
+        this.bands = bands;
+        this.rows = rows;
+        this.maxCandidates = maxCandidates;
+        this.size = byUser ? matrix.getUserCount() : matrix.getItemCount();
+        this.version = matrix.getVersion();
+        this.seeds = new long[bands * rows];
+        long state = seed;
+        for (int h = 0; h < seeds.length; h++) {
+            state += 0x9E3779B97F4A7C15L;
+            seeds[h] = mix(state);
+        }
+        this.idBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(size));
+
+        // keys[row * bands + band] holds each row's band hash; rows with no ratings get none
+        this.keys = new long[size * bands];
+        int[] minimums = new int[seeds.length];
+        int hashed = 0;
+        this.present = new boolean[size];
+        for (int row = 0; row < size; row++) {
+            if (signature(matrix, row, minimums)) {
+                present[row] = true;
+                hashed++;
+                for (int band = 0; band < bands; band++) {
+                    keys[row * bands + band] = bandKey(minimums, band);
+                }
+            }
+        }
+        this.buckets = new long[bands][hashed];
+        for (int band = 0; band < bands; band++) {
+            long[] bucket = buckets[band];
+            for (int row = 0, n = 0; row < size; row++) {
+                if (present[row]) {
+                    bucket[n++] = keys[row * bands + band] << idBits | row;
+                }
+            }
+            Arrays.sort(bucket);
+        }
+    }
+
+    /**
+     * Index over users, grouped by the products they rated
+     */
+    public static MinHashIndex users(RatingMatrix matrix, int bands, int rows, int maxCandidates) {
+        return new MinHashIndex(matrix, true, bands, rows, maxCandidates, 42);
+    }
+
+    /**
+     * Index over products, grouped by the users who rated them
+     */
+    public static MinHashIndex items(RatingMatrix matrix, int bands, int rows, int maxCandidates) {
+        return new MinHashIndex(matrix, false, bands, rows, maxCandidates, 42);
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Snapshot version this index was built from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Candidate neighbours of a row: the rows sharing a bucket with it in the
+     * most bands, which are the ones with the highest estimated overlap
+     * @param out Receives the candidates; at most maxCandidates are written
+     * @return Number of candidates
+     */
+    public int candidates(int row, int[] out) {
+        if (row >= size || !present[row]) {
+            return 0;
+        }
+        Query query = QUERY.get();
+        query.begin(size);
+        long mask = -1L << idBits;
+        for (int band = 0; band < bands; band++) {
+            long[] bucket = buckets[band];
+            long prefix = keys[row * bands + band] << idBits;
+            for (int i = lowerBound(bucket, prefix); i < bucket.length && (bucket[i] & mask) == prefix; i++) {
+                int other = (int) (bucket[i] & ~mask);
+                if (other != row) {
+                    query.hit(other);
+                }
+            }
+        }
+        int limit = Math.min(maxCandidates, out.length);
+        int count = 0;
+        if (query.touchedCount <= limit) {
+            for (int i = 0; i < query.touchedCount; i++) {
+                out[count++] = query.touched[i];
+            }
+        } else {
+            TopK top = query.selector(limit);
+            for (int i = 0; i < query.touchedCount; i++) {
+                top.offer(query.touched[i], query.hits[query.touched[i]]);
+            }
+            for (int i = 0; i < top.size(); i++) {
+                out[count++] = top.id(i);
+            }
+        }
+        query.end();
+        return count;
+    }
+
+    /**
+     * Approximate top neighbours: the candidates, scored exactly
+     * The row is scattered into a dense array once, so scoring a candidate
+     * is a single pass over the candidate's own ratings.
+     * @param matrix Snapshot to score against; normally the one the index was built from
+     * @param top Receives candidates with a defined similarity
+     * @return Number of candidates scored
+     */
+    public int nearest(RatingMatrix matrix, int row, TopK top) {
+        Query query = QUERY.get();
+        int[] out = query.candidates(maxCandidates);
+        int count = candidates(row, out);
+        if (count == 0) {
+            return 0;
+        }
+        float[] deviations = query.deviations(byUser ? matrix.getItemCount() : matrix.getUserCount());
+        int start = byUser ? matrix.rowStart(row) : matrix.columnStart(row);
+        int end = byUser ? matrix.rowEnd(row) : matrix.columnEnd(row);
+        float rowMean = byUser ? matrix.userMean(row) : 0;
+        for (int p = start; p < end; p++) {
+            if (byUser) {
+                deviations[matrix.itemAt(p)] = matrix.ratingAt(p) - rowMean;
+            } else {
+                deviations[matrix.userAt(p)] = matrix.columnRatingAt(p) - matrix.userMean(matrix.userAt(p));
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            int other = out[c];
+            float otherMean = byUser ? matrix.userMean(other) : 0;
+            int from = byUser ? matrix.rowStart(other) : matrix.columnStart(other);
+            int to = byUser ? matrix.rowEnd(other) : matrix.columnEnd(other);
+            double dot = 0;
+            double normA = 0;
+            double normB = 0;
+            int overlap = 0;
+            for (int p = from; p < to; p++) {
+                float a = deviations[byUser ? matrix.itemAt(p) : matrix.userAt(p)];
+                if (!Float.isNaN(a)) {
+                    double b = byUser ? matrix.ratingAt(p) - otherMean
+                                      : matrix.columnRatingAt(p) - matrix.userMean(matrix.userAt(p));
+                    dot += a * b;
+                    normA += (double) a * a;
+                    normB += b * b;
+                    overlap++;
+                }
+            }
+            float sim = SimilarityIndex.similarity(dot, normA, normB, overlap);
+            if (!Float.isNaN(sim)) {
+                top.offer(other, sim);
+            }
+        }
+        for (int p = start; p < end; p++) {
+            deviations[byUser ? matrix.itemAt(p) : matrix.userAt(p)] = Float.NaN;
+        }
+        return count;
+    }
+
+    /**
+     * Heap bytes held by the signatures and buckets
+     */
+    public long memoryBytes() {
+        return 8L * keys.length + 8L * bands * buckets[0].length + present.length;
+    }
+
+    @Override
+    public String toString() {
+        return "MinHashIndex[" + (byUser ? "users" : "products") + "=" + size + ", bands=" + bands
+            + ", rows=" + rows + ", " + memoryBytes() / 1024 + " KB]";
+    }
+
+    /**
+     * Minimum of each hash function over the row's set
+     * @return false if the set is empty
+     */
+    private boolean signature(RatingMatrix matrix, int row, int[] minimums) {
+        int start = byUser ? matrix.rowStart(row) : matrix.columnStart(row);
+        int end = byUser ? matrix.rowEnd(row) : matrix.columnEnd(row);
+        if (start == end) {
+            return false;
+        }
+        Arrays.fill(minimums, Integer.MAX_VALUE);
+        for (int p = start; p < end; p++) {
+            int element = byUser ? matrix.itemAt(p) : matrix.userAt(p);
+            for (int h = 0; h < seeds.length; h++) {
+                int hash = (int) (mix(element ^ seeds[h]) >>> 33);
+                if (hash < minimums[h]) {
+                    minimums[h] = hash;
+                }
+            }
+        }
+        return true;
+    }
+
+    private long bandKey(int[] minimums, int band) {
+        long key = band;
+        for (int r = 0; r < rows; r++) {
+            key = mix(key * 31 + minimums[band * rows + r]);
+        }
+        // Keep the key non-negative and clear of the row bits
+        return key >>> (idBits + 1);
+    }
+
+    private static int lowerBound(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 64-bit finaliser from SplitMix64
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Per-thread query state: band collision counts, reset sparsely, and the
+     * dense row used for re-ranking, kept all-NaN between queries
+     */
+    private static final class Query {
+        private int[] hits = new int[0];
+        private int[] touched = new int[0];
+        private int touchedCount;
+        private int[] candidates = new int[0];
+        private float[] deviations = new float[0];
+        private TopK selector;
+
+        void begin(int size) {
+            if (hits.length < size) {
+                hits = new int[size];
+                touched = new int[size];
+            }
+            touchedCount = 0;
+        }
+
+        void hit(int row) {
+            if (hits[row]++ == 0) {
+                touched[touchedCount++] = row;
+            }
+        }
+
+        void end() {
+            for (int i = 0; i < touchedCount; i++) {
+                hits[touched[i]] = 0;
+            }
+        }
+
+        TopK selector(int limit) {
+            if (selector == null || selector.capacity() != limit) {
+                selector = new TopK(limit);
+            }
+            selector.clear();
+            return selector;
+        }
+
+        int[] candidates(int size) {
+            if (candidates.length < size) {
+                candidates = new int[size];
+            }
+            return candidates;
+        }
+
+        float[] deviations(int size) {
+            if (deviations.length < size) {
+                deviations = new float[size];
+                Arrays.fill(deviations, Float.NaN);
+            }
+            return deviations;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of all ratings in compressed sparse row and column form
+ * Users and products are dense ints (see IdInterner). The ratings of user u
+ * are positions rowStart(u)..rowEnd(u)-1, sorted by product; the ratings of
+ * product p are positions columnStart(p)..columnEnd(p)-1, sorted by user.
+ * Every rating costs 16 bytes (an int index and a float value in each
+ * layout) instead of a boxed Rating object in two lists. The arrays can live
+ * on the Java heap or off-heap in direct buffers.
+ *
+ * Snapshots are produced by RatingStore.compact() and never change, so any
+ * number of threads may read one while the store keeps ingesting.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public final class RatingMatrix {
+
+    /**
+     * Where the rating arrays are kept
+     */
+    public enum Storage {
+        /** Java arrays, managed by the garbage collector */
+        HEAP,
+        /** Direct buffers outside the heap; invisible to GC pauses */
+        OFF_HEAP
+    }
+
+    private final IdInterner users;
+    private final IdInterner items;
+    private final int userCount;
+    private final int itemCount;
+    private final long version;
+    private final Storage storage;
+    private final IntBuffer rowOffsets;
+    private final IntBuffer rowItems;
+    private final FloatBuffer rowValues;
+    private final IntBuffer columnOffsets;
+    private final IntBuffer columnUsers;
+    private final FloatBuffer columnValues;
+    private final float[] userMeans;
+    private final int[] changedUsers;
+    private final int[] changedItems;
+
+    RatingMatrix(IdInterner users, IdInterner items, int userCount, int itemCount, long version, Storage storage,
+                 int[] rowOffsets, int[] rowItems, float[] rowValues,
+                 int[] changedUsers, int[] changedItems) {
+        this.users = users;
+        this.items = items;
+        this.userCount = userCount;
+        this.itemCount = itemCount;
+        this.version = version;
+        this.storage = storage;
+        this.changedUsers = changedUsers;
+        this.changedItems = changedItems;
+
+        // Transpose by counting sort; rows are visited in user order, so columns come out sorted by user
+        int ratings = rowOffsets[userCount];
+        int[] columnOffsets = new int[itemCount + 1];
+        for (int i = 0; i < ratings; i++) {
+            columnOffsets[rowItems[i] + 1]++;
+        }
+        for (int p = 0; p < itemCount; p++) {
+            columnOffsets[p + 1] += columnOffsets[p];
+        }
+        int[] cursor = Arrays.copyOf(columnOffsets, itemCount);
+        int[] columnUsers = new int[ratings];
+        float[] columnValues = new float[ratings];
+        float[] userMeans = new float[userCount];
+        for (int u = 0; u < userCount; u++) {
+            double sum = 0;
+            for (int i = rowOffsets[u]; i < rowOffsets[u + 1]; i++) {
+                int slot = cursor[rowItems[i]]++;
+                columnUsers[slot] = u;
+                columnValues[slot] = rowValues[i];
+                sum += rowValues[i];
+            }
+            int count = rowOffsets[u + 1] - rowOffsets[u];
+            userMeans[u] = count == 0 ? 0 : (float) (sum / count);
+        }
+        this.userMeans = userMeans;
+
+        this.rowOffsets = ints(rowOffsets, storage);
+        this.rowItems = ints(rowItems, storage);
+        this.rowValues = floats(rowValues, storage);
+        this.columnOffsets = ints(columnOffsets, storage);
+        this.columnUsers = ints(columnUsers, storage);
+        this.columnValues = floats(columnValues, storage);
+    }
+
+    /**
+     * An empty matrix
+     */
+    static RatingMatrix empty(IdInterner users, IdInterner items, Storage storage) {
+        return new RatingMatrix(users, items, 0, 0, 0, storage, new int[1], new int[0], new float[0],
+                                new int[0], new int[0]);
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getRatingCount() {
+        return rowOffsets.get(userCount);
+    }
+
+    /**
+     * Number of compactions that led to this snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Dense index of a user, or -1 if the user is not part of this snapshot
+     */
+    public int userIndex(String userId) {
+        int index = users.indexOf(userId);
+        return index < userCount ? index : -1;
+    }
+
+    /**
+     * Dense index of a product, or -1 if the product is not part of this snapshot
+     */
+    public int itemIndex(String productId) {
+        int index = items.indexOf(productId);
+        return index < itemCount ? index : -1;
+    }
+
+    public String userId(int user) {
+        return users.idOf(user);
+    }
+
+    public String itemId(int item) {
+        return items.idOf(item);
+    }
+
+    public int rowStart(int user) {
+        return rowOffsets.get(user);
+    }
+
+    public int rowEnd(int user) {
+        return rowOffsets.get(user + 1);
+    }
+
+    /**
+     * Product of the rating at a row position
+     */
+    public int itemAt(int position) {
+        return rowItems.get(position);
+    }
+
+    /**
+     * Value of the rating at a row position
+     */
+    public float ratingAt(int position) {
+        return rowValues.get(position);
+    }
+
+    public int columnStart(int item) {
+        return columnOffsets.get(item);
+    }
+
+    public int columnEnd(int item) {
+        return columnOffsets.get(item + 1);
+    }
+
+    /**
+     * User of the rating at a column position
+     */
+    public int userAt(int position) {
+        return columnUsers.get(position);
+    }
+
+    /**
+     * Value of the rating at a column position
+     */
+    public float columnRatingAt(int position) {
+        return columnValues.get(position);
+    }
+
+    /**
+     * Rating a user gave a product, or NaN if there is none
+     */
+    public float getRating(int user, int item) {
+        int low = rowStart(user);
+        int high = rowEnd(user) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int found = rowItems.get(mid);
+            if (found < item) {
+                low = mid + 1;
+            } else if (found > item) {
+                high = mid - 1;
+            } else {
+                return rowValues.get(mid);
+            }
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Average rating of a user, 0 if the user has none
+     */
+    public float userMean(int user) {
+        return userMeans[user];
+    }
+
+    /**
+     * Users whose ratings changed in the compaction that produced this snapshot, ascending
+     */
+    public int[] getChangedUsers() {
+        return changedUsers.clone();
+    }
+
+    /**
+     * Products rated in the compaction that produced this snapshot, ascending
+     */
+    public int[] getChangedItems() {
+        return changedItems.clone();
+    }
+
+    /**
+     * Bytes held by the rating arrays, on or off the heap
+     */
+    public long memoryBytes() {
+        return 4L * (rowOffsets.capacity() + rowItems.capacity() + rowValues.capacity()
+            + columnOffsets.capacity() + columnUsers.capacity() + columnValues.capacity()
+            + userMeans.length + changedUsers.length + changedItems.length);
+    }
+
+    @Override
+    public String toString() {
+        return "RatingMatrix[version=" + version + ", users=" + userCount + ", products=" + itemCount
+            + ", ratings=" + getRatingCount() + ", " + storage + ", " + memoryBytes() / 1024 + " KB]";
+    }
+
+    private static IntBuffer ints(int[] values, Storage storage) {
+        if (storage == Storage.HEAP) {
+            return IntBuffer.wrap(values);
+        }
+        IntBuffer buffer = ByteBuffer.allocateDirect(4 * values.length).order(ByteOrder.nativeOrder()).asIntBuffer();
+        buffer.put(values).flip();
+        return buffer;
+    }
+
+    private static FloatBuffer floats(float[] values, Storage storage) {
+        if (storage == Storage.HEAP) {
+            return FloatBuffer.wrap(values);
+        }
+        FloatBuffer buffer = ByteBuffer.allocateDirect(4 * values.length).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.put(values).flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.Arrays;
+
+/**
+ * Storage engine for ratings: an append buffer in front of an immutable RatingMatrix
+ * addRating() interns the user and product IDs and appends to primitive
+ * buffer arrays; nothing is visible to readers until compact() merges the
+ * buffer into a new RatingMatrix snapshot. The caller schedules compactions
+ * at whatever interval suits it; one also happens automatically once the
+ * buffer holds the larger of its capacity and half the compacted ratings,
+ * so a bulk load merges a geometrically growing buffer and costs O(n)
+ * overall instead of rewriting the matrix every few thousand ratings.
+ * A later rating for the same user and product replaces the earlier one.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class RatingStore {
+
+    public static final int DEFAULT_BUFFER_CAPACITY = 64 * 1024;
+
+    private final IdInterner users = new IdInterner();
+    private final IdInterner items = new IdInterner();
+    private final RatingMatrix.Storage storage;
+    private final int bufferCapacity;
+    private int[] pendingUsers;
+    private int[] pendingItems;
+    private float[] pendingValues;
+    private int pending;
+    private volatile RatingMatrix current;
+
+    public RatingStore() {
+        this(DEFAULT_BUFFER_CAPACITY, RatingMatrix.Storage.HEAP);
+    }
+
+    /**
+     * Creates an empty store
+     * @param bufferCapacity Minimum number of ratings buffered before a compaction is forced
+     * @param storage Where compacted snapshots keep their arrays
+     */
+    public RatingStore(int bufferCapacity, RatingMatrix.Storage storage) {
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity must be positive");
+        }
+        this.bufferCapacity = bufferCapacity;
+        this.storage = storage;
+        pendingUsers = new int[Math.min(bufferCapacity, 1024)];
+        pendingItems = new int[pendingUsers.length];
+        pendingValues = new float[pendingUsers.length];
+        current = RatingMatrix.empty(users, items, storage);
+    }
+
+    /**
+     * Registers a user, so it appears in the next snapshot even without ratings
+     * @return Dense user index
+     */
+    public int addUser(String userId) {
+        return users.intern(userId);
+    }
+
+    /**
+     * Registers a product, so it appears in the next snapshot even without ratings
+     * @return Dense product index
+     */
+    public int addProduct(String productId) {
+        return items.intern(productId);
+    }
+
+    /**
+     * Buffers a rating; it becomes visible with the next compaction
+     */
+    public synchronized void addRating(String userId, String productId, double rating) {
+        if (Double.isNaN(rating) || Double.isInfinite(rating)) {
+            throw new IllegalArgumentException("Invalid rating: " + rating);
+        }
+        if (pending >= Math.max(bufferCapacity, current.getRatingCount() / 2)) {
+            compact();
+        }
+        if (pending == pendingUsers.length) {
+            int capacity = pending * 2;
+            pendingUsers = Arrays.copyOf(pendingUsers, capacity);
+            pendingItems = Arrays.copyOf(pendingItems, capacity);
+            pendingValues = Arrays.copyOf(pendingValues, capacity);
+        }
+        pendingUsers[pending] = users.intern(userId);
+        pendingItems[pending] = items.intern(productId);
+        pendingValues[pending] = (float) rating;
+        pending++;
+    }
+
+    /**
+     * Latest compacted snapshot; never blocks and never changes afterwards
+     */
+    public RatingMatrix snapshot() {
+        return current;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Merges the buffered ratings into a new snapshot
+     * Only rows that received ratings are re-sorted; the rest are copied.
+     * @return The new snapshot, or the current one if nothing changed
+     */
+    public synchronized RatingMatrix compact() {
+        RatingMatrix base = current;
+        int userCount = users.size();
+        int itemCount = items.size();
+        if (pending == 0 && userCount == base.getUserCount() && itemCount == base.getItemCount()) {
+            return base;
+        }
+
+        // Lay out each row as its old ratings followed by its buffered ones, in arrival order
+        int[] offsets = new int[userCount + 1];
+        for (int u = 0; u < base.getUserCount(); u++) {
+            offsets[u + 1] = base.rowEnd(u) - base.rowStart(u);
+        }
+        for (int i = 0; i < pending; i++) {
+            offsets[pendingUsers[i] + 1]++;
+        }
+        for (int u = 0; u < userCount; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+        int[] rowItems = new int[offsets[userCount]];
+        float[] rowValues = new float[rowItems.length];
+        int[] cursor = Arrays.copyOf(offsets, userCount);
+        for (int u = 0; u < base.getUserCount(); u++) {
+            for (int i = base.rowStart(u); i < base.rowEnd(u); i++) {
+                rowItems[cursor[u]] = base.itemAt(i);
+                rowValues[cursor[u]++] = base.ratingAt(i);
+            }
+        }
+        for (int i = 0; i < pending; i++) {
+            int u = pendingUsers[i];
+            rowItems[cursor[u]] = pendingItems[i];
+            rowValues[cursor[u]++] = pendingValues[i];
+        }
+
+        int[] changedUsers = distinct(pendingUsers, pending);
+        int[] changedItems = distinct(pendingItems, pending);
+        int[] lengths = new int[userCount];
+        for (int u = 0; u < userCount; u++) {
+            lengths[u] = offsets[u + 1] - offsets[u];
+        }
+        for (int u : changedUsers) {
+            lengths[u] = sortRow(rowItems, rowValues, offsets[u], offsets[u + 1]);
+        }
+
+        // Close the gaps left by replaced ratings
+        int[] finalOffsets = new int[userCount + 1];
+        for (int u = 0; u < userCount; u++) {
+            finalOffsets[u + 1] = finalOffsets[u] + lengths[u];
+        }
+        if (finalOffsets[userCount] != rowItems.length) {
+            int[] packedItems = new int[finalOffsets[userCount]];
+            float[] packedValues = new float[packedItems.length];
+            for (int u = 0; u < userCount; u++) {
+                System.arraycopy(rowItems, offsets[u], packedItems, finalOffsets[u], lengths[u]);
+                System.arraycopy(rowValues, offsets[u], packedValues, finalOffsets[u], lengths[u]);
+            }
+            rowItems = packedItems;
+            rowValues = packedValues;
+        }
+
+        pending = 0;
+        if (pendingUsers.length > bufferCapacity) {
+            pendingUsers = new int[bufferCapacity];
+            pendingItems = new int[bufferCapacity];
+            pendingValues = new float[bufferCapacity];
+        }
+        current = new RatingMatrix(users, items, userCount, itemCount, base.getVersion() + 1, storage,
+                                   finalOffsets, rowItems, rowValues, changedUsers, changedItems);
+        return current;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RatingStore[" + current + ", pending=" + pending + "]";
+    }
+
+    /**
+     * Sorts one row by product, keeping only the latest rating per product
+     * @return New row length
+     */
+    private static int sortRow(int[] rowItems, float[] rowValues, int start, int end) {
+        int length = end - start;
+        long[] keys = new long[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = (long) rowItems[start + i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        float[] values = Arrays.copyOfRange(rowValues, start, end);
+        int written = 0;
+        for (int i = 0; i < length; i++) {
+            int item = (int) (keys[i] >>> 32);
+            if (i + 1 < length && (int) (keys[i + 1] >>> 32) == item) {
+                // Same product again later in arrival order: that one wins
+                continue;
+            }
+            rowItems[start + written] = item;
+            rowValues[start + written] = values[(int) keys[i]];
+            written++;
+        }
+        return written;
+    }
+
+    private static int[] distinct(int[] values, int count) {
+        int[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || sorted[unique - 1] != sorted[i]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, unique);
+    }
+}
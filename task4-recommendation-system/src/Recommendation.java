@@ -0,0 +1,32 @@
+/**
+ * A recommended product and the score it was ranked by
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public final class Recommendation {
+
+    private final String productId;
+    private final double score;
+
+    public Recommendation(String productId, double score) {
+        this.productId = productId;
+        this.score = score;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    /**
+     * Predicted rating, or similarity for similar-product lists
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%.2f)", productId, score);
+    }
+}
@@ -0,0 +1,583 @@
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmarks for the recommendation engine on synthetic ratings
+ *
+ * Usage: java RecommendationBenchmark &lt;mode&gt; [users] [products] [ratingsPerUser]
+ * memory     - heap used by boxed Map/List ratings versus RatingMatrix (heap and off-heap)
+ * similarity - SimilarityIndex build on one thread and on all cores, then an
+ *              incremental update against a full rebuild after new ratings
+ * serve      - RecommendationService throughput by client thread count while
+ *              ratings stream in, batch queries, and the result cache
+ * mf         - MatrixFactorization training time by thread count and held-out
+ *              RMSE against baselines, neighbourhood CF and the hybrid
+ * ann        - MinHash LSH neighbours against exact search: recall, speedup and full
+ *              index build time per bands x rows [x candidate limit] setting, e.g. "ann 50000 5000 100 32x2x1000,64x1"
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class RecommendationBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        String mode = args.length > 0 ? args[0] : "memory";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int items = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int perUser = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        System.out.println("=== Recommendation Benchmark: " + mode + ", " + users + " users, "
+            + items + " products, " + perUser + " ratings per user ===");
+        Dataset data = Dataset.generate(users, items, perUser, 42);
+        switch (mode) {
+            case "memory":
+                benchmarkMemory(data);
+                break;
+            case "similarity":
+                benchmarkSimilarity(data);
+                break;
+            case "serve":
+                benchmarkServing(data);
+                break;
+            case "mf":
+                benchmarkFactorization(data);
+                break;
+            case "ann":
+                benchmarkApproximate(data, args.length > 4 ? args[4] : "16x2x300,32x2x1000,64x1x1000");
+                break;
+            default:
+                System.err.println("Unknown mode: " + mode);
+        }
+    }
+
+    /**
+     * Heap cost of the Map&lt;String, List&lt;Rating&gt;&gt; layout against the rating matrix
+     */
+    private static void benchmarkMemory(Dataset data) throws InterruptedException {
+        long before = usedHeap();
+        Map<String, List<BoxedRating>> userRatings = new HashMap<>();
+        Map<String, List<BoxedRating>> productRatings = new HashMap<>();
+        for (int i = 0; i < data.size(); i++) {
+            BoxedRating rating = new BoxedRating(data.userIds[data.users[i]], data.itemIds[data.items[i]], data.ratings[i]);
+            userRatings.computeIfAbsent(rating.userId, id -> new ArrayList<>()).add(rating);
+            productRatings.computeIfAbsent(rating.productId, id -> new ArrayList<>()).add(rating);
+        }
+        long boxed = usedHeap() - before;
+        Reference.reachabilityFence(userRatings);
+        Reference.reachabilityFence(productRatings);
+        System.out.printf("Maps of boxed ratings: %,d bytes (%.1f per rating)%n", boxed, (double) boxed / data.size());
+        userRatings = null;
+        productRatings = null;
+
+        // Held outside the loop so the previous layout can be dropped before the next baseline is taken
+        RatingStore store = null;
+        RatingMatrix matrix = null;
+        for (RatingMatrix.Storage storage : RatingMatrix.Storage.values()) {
+            store = null;
+            matrix = null;
+            before = usedHeap();
+            long start = System.nanoTime();
+            store = data.load(storage);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            matrix = store.snapshot();
+            long heap = usedHeap() - before;
+            Reference.reachabilityFence(store);
+            System.out.printf("%s: %,d heap bytes (%.1f per rating), %,d bytes of rating arrays, loaded in %d ms%n",
+                storage, heap, (double) heap / matrix.getRatingCount(), matrix.memoryBytes(), millis);
+            System.out.println("  " + matrix);
+        }
+    }
+
+    /**
+     * Index build time by thread count, and incremental update against rebuild
+     */
+    private static void benchmarkSimilarity(Dataset data) {
+        RatingStore store = data.load(RatingMatrix.Storage.HEAP);
+        RatingMatrix matrix = store.snapshot();
+        System.out.println(matrix);
+        int cores = Runtime.getRuntime().availableProcessors();
+        SimilarityIndex index = null;
+        for (int threads : cores > 1 ? new int[] {1, cores} : new int[] {1}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            index = SimilarityIndex.build(matrix, SimilarityIndex.DEFAULT_NEIGHBORS, pool);
+            System.out.printf("Build on %d thread(s): %d ms%n", threads, (System.nanoTime() - start) / 1_000_000);
+            pool.shutdown();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        Random random = new Random(7);
+        for (int batch : new int[] {10, 100, 1000}) {
+            for (int i = 0; i < batch; i++) {
+                int n = random.nextInt(data.size());
+                store.addRating(data.userIds[data.users[n]], data.itemIds[random.nextInt(data.itemIds.length)],
+                                1 + random.nextInt(5));
+            }
+            matrix = store.compact();
+            long start = System.nanoTime();
+            SimilarityIndex updated = index.update(matrix, pool);
+            long incremental = System.nanoTime() - start;
+            start = System.nanoTime();
+            SimilarityIndex rebuilt = SimilarityIndex.build(matrix, SimilarityIndex.DEFAULT_NEIGHBORS, pool);
+            long full = System.nanoTime() - start;
+            System.out.printf("%,d new ratings (%d users changed): update %.1f ms, rebuild %.1f ms, %d rows differ%n",
+                batch, matrix.getChangedUsers().length, incremental / 1e6, full / 1e6, differences(matrix, updated, rebuilt));
+            index = updated;
+        }
+
+        CollaborativeFilter filter = new CollaborativeFilter(matrix, index);
+        CollaborativeFilter.Scratch scratch = new CollaborativeFilter.Scratch(matrix.getItemCount());
+        int requests = Math.min(10_000, matrix.getUserCount());
+        long start = System.nanoTime();
+        for (int u = 0; u < requests; u++) {
+            filter.recommend(u, 10, scratch);
+        }
+        System.out.printf("recommend(): %.1f us per request on one thread%n", (System.nanoTime() - start) / 1e3 / requests);
+        System.out.println("  " + data.userIds[0] + " -> " + filter.recommend(data.userIds[0], 5));
+        pool.shutdown();
+    }
+
+    /**
+     * Query throughput by thread count with ingestion running, then batches and the cache
+     */
+    private static void benchmarkServing(Dataset data) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        try (RecommendationService service = data.serve(cores, 0)) {
+            System.out.println(service.getMatrix());
+            AtomicBoolean running = new AtomicBoolean(true);
+            LongAdder ingested = new LongAdder();
+            Thread writer = new Thread(() -> {
+                Random random = new Random(3);
+                while (running.get()) {
+                    for (int i = 0; i < 100; i++) {
+                        store(service, data, random);
+                        ingested.increment();
+                    }
+                    service.refresh();
+                }
+            }, "ingest");
+            writer.start();
+            for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+                long queries = runClients(service, data, threads, 2000);
+                System.out.printf("%2d client thread(s): %,8.0f recommendations/s%n", threads, queries / 2.0);
+            }
+            running.set(false);
+            writer.join();
+            System.out.printf("Ingested %,d ratings meanwhile, now at %s%n", ingested.sum(), service.getMatrix());
+
+            Random random = new Random(5);
+            List<String> batch = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                batch.add(data.userIds[random.nextInt(data.userIds.length)]);
+            }
+            long start = System.nanoTime();
+            service.recommend(batch, 10);
+            System.out.printf("Batch of %,d users on %d worker(s): %.0f ms%n",
+                batch.size(), cores, (System.nanoTime() - start) / 1e6);
+        }
+
+        try (RecommendationService cached = data.serve(cores, RecommendationService.DEFAULT_CACHE_CAPACITY)) {
+            for (int pass = 1; pass <= 2; pass++) {
+                long queries = runClients(cached, data, cores, 2000);
+                System.out.printf("Cached, pass %d: %,8.0f recommendations/s, %,d users cached%n",
+                    pass, queries / 2.0, cached.getCacheSize());
+            }
+        }
+    }
+
+    /**
+     * Client threads asking for random users' top 10 for a while
+     * @return Total recommendations served
+     */
+    private static long runClients(RecommendationService service, Dataset data, int threads, long millis)
+            throws InterruptedException {
+        LongAdder served = new LongAdder();
+        long deadline = System.currentTimeMillis() + millis;
+        Thread[] clients = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            clients[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                while (System.currentTimeMillis() < deadline) {
+                    service.recommend(data.userIds[random.nextInt(data.userIds.length)], 10);
+                    served.increment();
+                }
+            });
+            clients[t].start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        return served.sum();
+    }
+
+    private static void store(RecommendationService service, Dataset data, Random random) {
+        int n = random.nextInt(data.size());
+        service.addRating(data.userIds[data.users[n]], data.itemIds[random.nextInt(data.itemIds.length)],
+                          1 + random.nextInt(5));
+    }
+
+    /**
+     * Held-out RMSE of the factor model against simpler predictors, and its training and serving cost
+     */
+    private static void benchmarkFactorization(Dataset data) {
+        // Hold out 10% of the ratings, dropping any pair that is also in the training set
+        Random random = new Random(13);
+        boolean[] heldOut = new boolean[data.size()];
+        RatingStore store = new RatingStore();
+        for (int i = 0; i < data.size(); i++) {
+            heldOut[i] = random.nextInt(10) == 0;
+            if (!heldOut[i]) {
+                store.addRating(data.userIds[data.users[i]], data.itemIds[data.items[i]], data.ratings[i]);
+            }
+        }
+        RatingMatrix matrix = store.compact();
+        int tests = 0;
+        int[] testUsers = new int[data.size()];
+        int[] testItems = new int[data.size()];
+        float[] testRatings = new float[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            int user = matrix.userIndex(data.userIds[data.users[i]]);
+            int item = matrix.itemIndex(data.itemIds[data.items[i]]);
+            if (heldOut[i] && user >= 0 && item >= 0 && Float.isNaN(matrix.getRating(user, item))) {
+                testUsers[tests] = user;
+                testItems[tests] = item;
+                testRatings[tests++] = data.ratings[i];
+            }
+        }
+        System.out.printf("%s, %,d held-out ratings%n", matrix, tests);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        SimilarityIndex index = SimilarityIndex.build(matrix, SimilarityIndex.DEFAULT_NEIGHBORS, pool);
+        CollaborativeFilter filter = new CollaborativeFilter(matrix, index);
+        MatrixFactorization model = null;
+        for (int threads : cores > 1 ? new int[] {1, cores} : new int[] {1}) {
+            ForkJoinPool trainers = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            model = MatrixFactorization.train(matrix, trainers);
+            System.out.printf("Trained %d epochs on %d thread(s) in %d ms: %s%n", MatrixFactorization.DEFAULT_EPOCHS,
+                threads, (System.nanoTime() - start) / 1_000_000, model);
+            trainers.shutdown();
+        }
+
+        double[] errors = new double[6];
+        for (int t = 0; t < tests; t++) {
+            int user = testUsers[t];
+            int item = testItems[t];
+            double userBased = filter.predictUserBased(user, item);
+            double factored = model.predict(user, item);
+            double[] predictions = {
+                0, matrix.userMean(user), userBased, filter.predictItemBased(user, item), factored,
+                0.5 * factored + 0.5 * userBased
+            };
+            for (int p = 1; p < predictions.length; p++) {
+                errors[p] += (testRatings[t] - predictions[p]) * (testRatings[t] - predictions[p]);
+            }
+        }
+        String[] names = {null, "User mean", "User-based CF", "Item-based CF", "Matrix factorization", "Hybrid 50/50"};
+        System.out.printf("Held-out RMSE:%n");
+        for (int p = 1; p < names.length; p++) {
+            System.out.printf("  %-21s %.4f%n", names[p], Math.sqrt(errors[p] / tests));
+        }
+        System.out.printf("  %-21s %.4f%n", "(model.rmse() check)", model.rmse(
+            Arrays.copyOf(testUsers, tests), Arrays.copyOf(testItems, tests), Arrays.copyOf(testRatings, tests)));
+
+        int requests = Math.min(2000, matrix.getUserCount());
+        TopK top = new TopK(10);
+        long start = System.nanoTime();
+        for (int u = 0; u < requests; u++) {
+            top.clear();
+            model.recommend(matrix, u, top);
+        }
+        System.out.printf("Model top 10 over %,d products: %.1f us per user%n",
+            matrix.getItemCount(), (System.nanoTime() - start) / 1e3 / requests);
+        CollaborativeFilter.Scratch scratch = new CollaborativeFilter.Scratch(matrix.getItemCount());
+        start = System.nanoTime();
+        for (int u = 0; u < requests; u++) {
+            filter.recommend(u, 10, scratch, model, 0.5);
+        }
+        System.out.printf("Hybrid top 10: %.1f us per user%n", (System.nanoTime() - start) / 1e3 / requests);
+        System.out.println("  " + matrix.userId(0) + " -> " + filter.recommend(0, 5, scratch, model, 0.5));
+        pool.shutdown();
+    }
+
+    /**
+     * Recall and speedup of MinHash candidates, re-ranked exactly, against exact search
+     * @param settings Comma-separated bands x rows pairs
+     */
+    private static void benchmarkApproximate(Dataset data, String settings) {
+        RatingMatrix matrix = data.load(RatingMatrix.Storage.HEAP).snapshot();
+        System.out.println(matrix);
+        int k = SimilarityIndex.DEFAULT_NEIGHBORS;
+        Random random = new Random(11);
+        int[] sampleUsers = new int[Math.min(1000, matrix.getUserCount())];
+        for (int i = 0; i < sampleUsers.length; i++) {
+            sampleUsers[i] = random.nextInt(matrix.getUserCount());
+        }
+        int[] sampleItems = new int[Math.min(1000, matrix.getItemCount())];
+        for (int i = 0; i < sampleItems.length; i++) {
+            sampleItems[i] = random.nextInt(matrix.getItemCount());
+        }
+
+        // Exact answers and their cost; one warm-up pass first
+        int[][] exactUsers = new int[sampleUsers.length][];
+        int[][] exactItems = new int[sampleItems.length][];
+        double userNanos = 0;
+        double itemNanos = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < sampleUsers.length; i++) {
+                TopK top = new TopK(k);
+                SimilarityIndex.nearestUsers(matrix, sampleUsers[i], top);
+                exactUsers[i] = ids(top);
+            }
+            userNanos = (double) (System.nanoTime() - start) / sampleUsers.length;
+            start = System.nanoTime();
+            for (int i = 0; i < sampleItems.length; i++) {
+                TopK top = new TopK(k);
+                SimilarityIndex.nearestItems(matrix, sampleItems[i], top);
+                exactItems[i] = ids(top);
+            }
+            itemNanos = (double) (System.nanoTime() - start) / sampleItems.length;
+        }
+        System.out.printf("Exact search: users %.1f us, products %.1f us per query%n", userNanos / 1e3, itemNanos / 1e3);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        long exactStart = System.nanoTime();
+        SimilarityIndex.build(matrix, k, pool);
+        System.out.printf("  full exact index: %d ms%n", (System.nanoTime() - exactStart) / 1_000_000);
+
+        for (String setting : settings.split(",")) {
+            String[] parts = setting.trim().split("x");
+            int bands = Integer.parseInt(parts[0]);
+            int rows = Integer.parseInt(parts[1]);
+            int limit = parts.length > 2 ? Integer.parseInt(parts[2]) : MinHashIndex.DEFAULT_MAX_CANDIDATES;
+            long start = System.nanoTime();
+            MinHashIndex users = MinHashIndex.users(matrix, bands, rows, limit);
+            MinHashIndex items = MinHashIndex.items(matrix, bands, rows, limit);
+            long buildMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%dx%dx%d: built in %d ms (%,d KB)%n", bands, rows, limit, buildMillis,
+                (users.memoryBytes() + items.memoryBytes()) / 1024);
+            reportApproximate("  users   ", users, matrix, sampleUsers, exactUsers, userNanos, k);
+            reportApproximate("  products", items, matrix, sampleItems, exactItems, itemNanos, k);
+            start = System.nanoTime();
+            SimilarityIndex.buildApproximate(matrix, k, bands, rows, limit, pool);
+            System.out.printf("  full approximate index: %d ms%n", (System.nanoTime() - start) / 1_000_000);
+        }
+        pool.shutdown();
+    }
+
+    private static void reportApproximate(String label, MinHashIndex index, RatingMatrix matrix, int[] sample,
+                                          int[][] exact, double exactNanos, int k) {
+        long found = 0;
+        long wanted = 0;
+        long candidates = 0;
+        double nanos = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            found = 0;
+            wanted = 0;
+            candidates = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < sample.length; i++) {
+                TopK top = new TopK(k);
+                candidates += index.nearest(matrix, sample[i], top);
+                int[] approximate = ids(top);
+                wanted += exact[i].length;
+                for (int id : approximate) {
+                    for (int e : exact[i]) {
+                        if (e == id) {
+                            found++;
+                            break;
+                        }
+                    }
+                }
+            }
+            nanos = (double) (System.nanoTime() - start) / sample.length;
+        }
+        System.out.printf("%s recall@%d %.3f, %.0f candidates, %.1f us per query, %.1fx faster%n",
+            label, k, wanted == 0 ? 1.0 : (double) found / wanted, (double) candidates / sample.length,
+            nanos / 1e3, exactNanos / nanos);
+    }
+
+    private static int[] ids(TopK top) {
+        int[] ids = new int[top.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = top.id(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Rows whose neighbour lists differ beyond ties and rounding
+     */
+    private static int differences(RatingMatrix matrix, SimilarityIndex a, SimilarityIndex b) {
+        int rows = 0;
+        for (int u = 0; u < matrix.getUserCount(); u++) {
+            if (a.userNeighborCount(u) != b.userNeighborCount(u)) {
+                rows++;
+                continue;
+            }
+            for (int n = 0; n < a.userNeighborCount(u); n++) {
+                if (Math.abs(a.userSimilarity(u, n) - b.userSimilarity(u, n)) > 1e-6f) {
+                    rows++;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < matrix.getItemCount(); i++) {
+            if (a.itemNeighborCount(i) != b.itemNeighborCount(i)) {
+                rows++;
+                continue;
+            }
+            for (int n = 0; n < a.itemNeighborCount(i); n++) {
+                if (Math.abs(a.itemSimilarity(i, n) - b.itemSimilarity(i, n)) > 1e-6f) {
+                    rows++;
+                    break;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Heap in use after collecting garbage
+     * The serial collector may leave dead objects in place and only compacts
+     * fully every fourth full GC, so four are forced for an exact figure.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The per-rating object a Map&lt;String, List&lt;Rating&gt;&gt; store holds
+     */
+    private static class BoxedRating {
+        final String userId;
+        final String productId;
+        final double rating;
+
+        BoxedRating(String userId, String productId, double rating) {
+            this.userId = userId;
+            this.productId = productId;
+            this.rating = rating;
+        }
+    }
+
+    /**
+     * Synthetic ratings with structure: users belong to taste clusters that
+     * favour a slice of the catalog, and values follow latent factors plus noise
+     */
+    static class Dataset {
+        private static final int CLUSTERS = 50;
+        private static final int FACTORS = 8;
+
+        final String[] userIds;
+        final String[] itemIds;
+        final int[] users;
+        final int[] items;
+        final float[] ratings;
+
+        private Dataset(String[] userIds, String[] itemIds, int[] users, int[] items, float[] ratings) {
+            this.userIds = userIds;
+            this.itemIds = itemIds;
+            this.users = users;
+            this.items = items;
+            this.ratings = ratings;
+        }
+
+        static Dataset generate(int userCount, int itemCount, int perUser, long seed) {
+            Random random = new Random(seed);
+            String[] userIds = new String[userCount];
+            String[] itemIds = new String[itemCount];
+            float[][] userFactors = new float[userCount][FACTORS];
+            float[][] itemFactors = new float[itemCount][FACTORS];
+            for (int u = 0; u < userCount; u++) {
+                userIds[u] = "U" + u;
+                for (int f = 0; f < FACTORS; f++) {
+                    userFactors[u][f] = (float) random.nextGaussian() * 0.5f;
+                }
+            }
+            for (int i = 0; i < itemCount; i++) {
+                itemIds[i] = "P" + i;
+                for (int f = 0; f < FACTORS; f++) {
+                    itemFactors[i][f] = (float) random.nextGaussian() * 0.5f;
+                }
+            }
+
+            int size = userCount * perUser;
+            int[] users = new int[size];
+            int[] items = new int[size];
+            float[] ratings = new float[size];
+            int slice = Math.max(1, itemCount / CLUSTERS);
+            for (int u = 0, n = 0; u < userCount; u++) {
+                int cluster = u % CLUSTERS;
+                for (int r = 0; r < perUser; r++, n++) {
+                    int item = random.nextInt(10) < 7
+                        ? Math.min(itemCount - 1, cluster * slice + random.nextInt(slice))
+                        : (int) (itemCount * Math.pow(random.nextDouble(), 2));
+                    double score = 3.5 + random.nextGaussian() * 0.3;
+                    for (int f = 0; f < FACTORS; f++) {
+                        score += userFactors[u][f] * itemFactors[item][f];
+                    }
+                    users[n] = u;
+                    items[n] = item;
+                    ratings[n] = (float) Math.max(1, Math.min(5, Math.round(score)));
+                }
+            }
+            return new Dataset(userIds, itemIds, users, items, ratings);
+        }
+
+        int size() {
+            return users.length;
+        }
+
+        /**
+         * Loads every rating into a new store and compacts it
+         */
+        RatingStore load(RatingMatrix.Storage storage) {
+            RatingStore store = new RatingStore(RatingStore.DEFAULT_BUFFER_CAPACITY, storage);
+            for (String userId : userIds) {
+                store.addUser(userId);
+            }
+            for (String itemId : itemIds) {
+                store.addProduct(itemId);
+            }
+            for (int i = 0; i < size(); i++) {
+                store.addRating(userIds[users[i]], itemIds[items[i]], ratings[i]);
+            }
+            store.compact();
+            return store;
+        }
+
+        /**
+         * Loads every rating into a new service and publishes it
+         */
+        RecommendationService serve(int threads, int cacheCapacity) {
+            RecommendationService service = new RecommendationService(threads, 0, cacheCapacity);
+            for (String userId : userIds) {
+                service.addUser(userId);
+            }
+            for (String itemId : itemIds) {
+                service.addProduct(itemId);
+            }
+            for (int i = 0; i < size(); i++) {
+                service.addRating(userIds[users[i]], itemIds[items[i]], ratings[i]);
+            }
+            service.refresh();
+            return service;
+        }
+    }
+}
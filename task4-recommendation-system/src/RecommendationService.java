@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe recommendation serving over copy-on-write snapshots
+ * Writes go to a RatingStore buffer. refresh(), run on a background
+ * schedule or on demand, compacts the buffer, updates the similarity index
+ * for the new matrix and publishes both together through one volatile
+ * reference. Queries read whichever snapshot was published when they
+ * started and never wait for ingestion or index updates.
+ *
+ * Neighbours are found by exact search unless setApproximateNeighbors()
+ * switches the index to MinHash candidates, which bounds the cost of a
+ * refresh on large catalogs at some loss of recall.
+ *
+ * An optional MatrixFactorization model, trained with trainModel(), joins
+ * the neighbourhood prediction in a weighted hybrid. It is published in the
+ * same snapshot and kept across refreshes until it is retrained.
+ *
+ * A batch query reads one snapshot for all its users and spreads them over
+ * the workers; each user is still scored on its own.
+ *
+ * Results are cached per user and invalidated when a refresh publishes new
+ * ratings for that user. A cached list may lag other users' newer ratings
+ * until that user's own ratings change or the cache fills and is cleared.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class RecommendationService implements AutoCloseable {
+
+    public static final int DEFAULT_CACHE_CAPACITY = 100_000;
+
+    private final RatingStore store;
+    private final ForkJoinPool pool;
+    private final int cacheCapacity;
+    private final ConcurrentHashMap<String, CachedResult> cache = new ConcurrentHashMap<>();
+    private final ThreadLocal<CollaborativeFilter.Scratch> scratch =
+        ThreadLocal.withInitial(() -> new CollaborativeFilter.Scratch(0));
+    private final ScheduledExecutorService refresher;
+    private volatile Snapshot current;
+
+    /**
+     * Creates a service with no ratings
+     * @param threads Workers for index updates and batch queries
+     * @param refreshMillis Interval between background refreshes, or 0 to refresh only on demand
+     * @param cacheCapacity Cached users before the cache is cleared, or 0 to disable it
+     */
+    public RecommendationService(int threads, long refreshMillis, int cacheCapacity) {
+        this.store = new RatingStore();
+        this.pool = new ForkJoinPool(threads);
+        this.cacheCapacity = cacheCapacity;
+        RatingMatrix matrix = store.snapshot();
+        this.current = new Snapshot(matrix, SimilarityIndex.build(matrix, SimilarityIndex.DEFAULT_NEIGHBORS, pool),
+                                    new long[0], null, 0, 0);
+        if (refreshMillis > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "recommendation-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        } else {
+            refresher = null;
+        }
+    }
+
+    public void addUser(String userId) {
+        store.addUser(userId);
+    }
+
+    public void addProduct(String productId) {
+        store.addProduct(productId);
+    }
+
+    /**
+     * Records a rating; queries see it after the next refresh
+     */
+    public void addRating(String userId, String productId, double rating) {
+        store.addRating(userId, productId, rating);
+    }
+
+    /**
+     * Compacts pending ratings and publishes a snapshot with an updated index
+     * @return The published snapshot's version
+     */
+    public synchronized long refresh() {
+        Snapshot old = current;
+        RatingMatrix matrix = store.compact();
+        if (matrix.getVersion() == old.matrix.getVersion()) {
+            return old.matrix.getVersion();
+        }
+        SimilarityIndex index = old.index.update(matrix, pool);
+        long[] changedAt = Arrays.copyOf(old.changedAt, matrix.getUserCount());
+        if (matrix.getVersion() == old.matrix.getVersion() + 1) {
+            for (int user : matrix.getChangedUsers()) {
+                changedAt[user] = matrix.getVersion();
+                cache.remove(matrix.userId(user));
+            }
+        } else {
+            // Ratings were also compacted while buffering; their change lists are gone
+            Arrays.fill(changedAt, matrix.getVersion());
+            cache.clear();
+        }
+        current = new Snapshot(matrix, index, changedAt, old.model, old.modelWeight, old.modelGeneration);
+        return matrix.getVersion();
+    }
+
+    /**
+     * Trains a factor model on the current snapshot and serves it in the hybrid
+     * Training runs on the service's workers; queries continue meanwhile.
+     * @param modelWeight Share of the model's prediction in the hybrid, 0 to 1
+     */
+    public MatrixFactorization trainModel(int factors, int epochs, double modelWeight) {
+        MatrixFactorization model = MatrixFactorization.train(getMatrix(), factors, epochs,
+            MatrixFactorization.DEFAULT_LEARNING_RATE, MatrixFactorization.DEFAULT_REGULARIZATION, pool,
+            MatrixFactorization.DEFAULT_SEED);
+        setModel(model, modelWeight);
+        return model;
+    }
+
+    /**
+     * Publishes a model and its weight in the hybrid; a null model serves neighbourhood predictions only
+     */
+    public synchronized void setModel(MatrixFactorization model, double modelWeight) {
+        if (modelWeight < 0 || modelWeight > 1) {
+            throw new IllegalArgumentException("Model weight must be between 0 and 1: " + modelWeight);
+        }
+        Snapshot old = current;
+        current = new Snapshot(old.matrix, old.index, old.changedAt, model, modelWeight, old.modelGeneration + 1);
+        cache.clear();
+    }
+
+    /**
+     * Rebuilds the index for the current snapshot with neighbours searched among
+     * MinHash candidates; later refreshes keep the setting
+     * @param bands MinHash bands, or 0 to switch back to exact search
+     * @param bandRows Signature values per band
+     * @param maxCandidates Candidates scored per user and per product
+     * @see SimilarityIndex#buildApproximate
+     */
+    public synchronized void setApproximateNeighbors(int bands, int bandRows, int maxCandidates) {
+        Snapshot old = current;
+        int k = old.index.getNeighborLimit();
+        SimilarityIndex index = bands > 0
+            ? SimilarityIndex.buildApproximate(old.matrix, k, bands, bandRows, maxCandidates, pool)
+            : SimilarityIndex.build(old.matrix, k, pool);
+        // The version is unchanged, so a new generation is what retires results from the old index
+        current = new Snapshot(old.matrix, index, old.changedAt, old.model, old.modelWeight, old.modelGeneration + 1);
+        cache.clear();
+    }
+
+    public MatrixFactorization getModel() {
+        return current.model;
+    }
+
+    /**
+     * Snapshot queries currently read
+     */
+    public RatingMatrix getMatrix() {
+        return current.matrix;
+    }
+
+    public SimilarityIndex getIndex() {
+        return current.index;
+    }
+
+    /**
+     * Top products for one user
+     * @return Best first; empty for a user without ratings in the current snapshot
+     */
+    public List<Recommendation> recommend(String userId, int count) {
+        return recommend(current, userId, count);
+    }
+
+    /**
+     * Top products for many users, served in parallel from one snapshot
+     * The batch is per-user parallelism: every user is scored independently,
+     * exactly as by recommend(String, int), and no work is shared between
+     * users beyond pinning the snapshot once. Repeated IDs are computed once;
+     * cached users are not computed at all.
+     * @return Results keyed by user, in first-seen order
+     */
+    public Map<String, List<Recommendation>> recommend(List<String> userIds, int count) {
+        Snapshot snapshot = current;
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<String, List<Recommendation>> results = new ConcurrentHashMap<>();
+        pool.submit(() -> unique.parallelStream().forEach(userId ->
+            results.put(userId, recommend(snapshot, userId, count)))).join();
+        Map<String, List<Recommendation>> ordered = new LinkedHashMap<>();
+        for (String userId : unique) {
+            ordered.put(userId, results.get(userId));
+        }
+        return ordered;
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        pool.shutdown();
+    }
+
+    private List<Recommendation> recommend(Snapshot snapshot, String userId, int count) {
+        int user = snapshot.matrix.userIndex(userId);
+        if (user < 0 || count <= 0) {
+            return Collections.emptyList();
+        }
+        if (cacheCapacity > 0) {
+            CachedResult cached = cache.get(userId);
+            // Entries computed before the user's latest ratings are stale even if a racing query re-cached them
+            if (cached != null && cached.version >= snapshot.changedAt[user]
+                    && cached.version <= snapshot.matrix.getVersion()
+                    && cached.modelGeneration == snapshot.modelGeneration && cached.count >= count) {
+                return cached.recommendations.size() > count ? cached.recommendations.subList(0, count)
+                                                              : cached.recommendations;
+            }
+        }
+        List<Recommendation> recommendations =
+            Collections.unmodifiableList(snapshot.filter.recommend(user, count, scratch.get(),
+                                                                   snapshot.model, snapshot.modelWeight));
+        if (cacheCapacity > 0) {
+            if (cache.size() >= cacheCapacity) {
+                cache.clear();
+            }
+            cache.put(userId, new CachedResult(snapshot.matrix.getVersion(), snapshot.modelGeneration,
+                                               count, recommendations));
+        }
+        return recommendations;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            System.err.println("Recommendation refresh failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A matrix and the index built for it, published together with the
+     * version in which each user's ratings last changed and the hybrid's model
+     */
+    private static final class Snapshot {
+        final RatingMatrix matrix;
+        final SimilarityIndex index;
+        final CollaborativeFilter filter;
+        final long[] changedAt;
+        final MatrixFactorization model;
+        final double modelWeight;
+        final long modelGeneration;
+
+        Snapshot(RatingMatrix matrix, SimilarityIndex index, long[] changedAt,
+                 MatrixFactorization model, double modelWeight, long modelGeneration) {
+            this.matrix = matrix;
+            this.index = index;
+            this.filter = new CollaborativeFilter(matrix, index);
+            this.changedAt = changedAt;
+            this.model = model;
+            this.modelWeight = modelWeight;
+            this.modelGeneration = modelGeneration;
+        }
+    }
+
+    private static final class CachedResult {
+        final long version;
+        final long modelGeneration;
+        final int count;
+        final List<Recommendation> recommendations;
+
+        CachedResult(long version, long modelGeneration, int count, List<Recommendation> recommendations) {
+            this.version = version;
+            this.modelGeneration = modelGeneration;
+            this.count = count;
+            this.recommendations = recommendations;
+        }
+    }
+}
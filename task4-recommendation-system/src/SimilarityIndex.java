@@ -0,0 +1,638 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Precomputed top-K nearest neighbours for every user and every product
+ * User similarity is the Pearson correlation over co-rated products, centred
+ * on each user's mean rating; product similarity is the adjusted cosine over
+ * the users who rated both, centred the same way. Both are damped by
+ * significance weighting, so pairs sharing fewer than SIGNIFICANCE_OVERLAP
+ * ratings cannot outrank well-supported ones, and pairs sharing fewer than
+ * MIN_OVERLAP are ignored.
+ *
+ * A row is computed by walking the inverted index (the other layout of the
+ * RatingMatrix) and accumulating only the pairs that actually co-occur, so
+ * the cost is the number of co-ratings rather than users x users. Rows are
+ * built in parallel on a ForkJoinPool.
+ *
+ * An index is immutable. update() derives the index for the next snapshot
+ * from the rows whose ratings changed: it recomputes those rows, patches the
+ * affected entries of every other row, and recomputes any row that lost a
+ * neighbour, giving the same result as a full rebuild at a fraction of the cost.
+ *
+ * For catalogs too large for the exact search, buildApproximate() takes each
+ * row's candidates from a MinHashIndex instead and scores only those. Such
+ * an index keeps its LSH settings and is rebuilt approximately on update,
+ * since the signatures belong to one snapshot.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public final class SimilarityIndex {
+
+    public static final int DEFAULT_NEIGHBORS = 20;
+    public static final int MIN_OVERLAP = 2;
+    public static final int SIGNIFICANCE_OVERLAP = 20;
+    private static final int LEAF_ROWS = 32;
+    private static final int REBUILD_FRACTION = 4;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final long version;
+    private final int k;
+    private final Neighbors users;
+    private final Neighbors items;
+    // LSH settings of an approximate index; bands is 0 for an exact one
+    private final int bands;
+    private final int bandRows;
+    private final int maxCandidates;
+
+    private SimilarityIndex(long version, int k, Neighbors users, Neighbors items) {
+        this(version, k, users, items, 0, 0, 0);
+    }
+
+    private SimilarityIndex(long version, int k, Neighbors users, Neighbors items,
+                            int bands, int bandRows, int maxCandidates) {
+        this.version = version;
+        this.k = k;
+        this.users = users;
+        this.items = items;
+        this.bands = bands;
+        this.bandRows = bandRows;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Builds the index for a snapshot from scratch
+     * @param neighbors Neighbours kept per user and per product
+     * @param pool Pool running the build
+     */
+    public static SimilarityIndex build(RatingMatrix matrix, int neighbors, ForkJoinPool pool) {
+        Neighbors users = new Neighbors(matrix.getUserCount(), neighbors);
+        Neighbors items = new Neighbors(matrix.getItemCount(), neighbors);
+        pool.invoke(new RowTask(matrix, true, range(users.rows), 0, users.rows, users, null, null, null, null));
+        pool.invoke(new RowTask(matrix, false, range(items.rows), 0, items.rows, items, null, null, null, null));
+        return new SimilarityIndex(matrix.getVersion(), neighbors, users, items);
+    }
+
+    /**
+     * Builds an index whose neighbours are searched among MinHash candidates only
+     * Each row scores at most maxCandidates others, so the cost no longer grows
+     * with the popularity of what a user rated; neighbours LSH misses are lost.
+     * @param bands MinHash bands; more raise recall
+     * @param bandRows Signature values per band; more shrink the candidate sets
+     * @param maxCandidates Candidates scored per row
+     * @see MinHashIndex
+     */
+    public static SimilarityIndex buildApproximate(RatingMatrix matrix, int neighbors, int bands, int bandRows,
+                                                   int maxCandidates, ForkJoinPool pool) {
+        MinHashIndex userCandidates = MinHashIndex.users(matrix, bands, bandRows, maxCandidates);
+        MinHashIndex itemCandidates = MinHashIndex.items(matrix, bands, bandRows, maxCandidates);
+        Neighbors users = new Neighbors(matrix.getUserCount(), neighbors);
+        Neighbors items = new Neighbors(matrix.getItemCount(), neighbors);
+        pool.invoke(new RowTask(matrix, true, range(users.rows), 0, users.rows, users, null, null, null,
+                                userCandidates));
+        pool.invoke(new RowTask(matrix, false, range(items.rows), 0, items.rows, items, null, null, null,
+                                itemCandidates));
+        return new SimilarityIndex(matrix.getVersion(), neighbors, users, items, bands, bandRows, maxCandidates);
+    }
+
+    /**
+     * Index for a newer snapshot
+     * Applied incrementally when the snapshot is the next compaction of the
+     * one this index was built for, otherwise rebuilt. Each side is rebuilt
+     * on its own when a large share of its rows changed.
+     */
+    public SimilarityIndex update(RatingMatrix matrix, ForkJoinPool pool) {
+        if (matrix.getVersion() == version) {
+            return this;
+        }
+        if (bands > 0) {
+            return buildApproximate(matrix, k, bands, bandRows, maxCandidates, pool);
+        }
+        if (matrix.getVersion() != version + 1) {
+            return build(matrix, k, pool);
+        }
+        int[] changedUsers = matrix.getChangedUsers();
+        int[] changedItems = itemsRatedBy(matrix, changedUsers);
+        Neighbors newUsers = users.update(matrix, true, changedUsers, pool);
+        Neighbors newItems = items.update(matrix, false, changedItems, pool);
+        return new SimilarityIndex(matrix.getVersion(), k, newUsers, newItems);
+    }
+
+    /**
+     * Snapshot version this index reflects
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNeighborLimit() {
+        return k;
+    }
+
+    /**
+     * True if neighbours were searched among MinHash candidates
+     */
+    public boolean isApproximate() {
+        return bands > 0;
+    }
+
+    public int userNeighborCount(int user) {
+        return user < users.rows ? users.counts[user] : 0;
+    }
+
+    /**
+     * n-th most similar user, most similar first
+     */
+    public int userNeighbor(int user, int n) {
+        return users.ids[user * k + n];
+    }
+
+    public float userSimilarity(int user, int n) {
+        return users.sims[user * k + n];
+    }
+
+    public int itemNeighborCount(int item) {
+        return item < items.rows ? items.counts[item] : 0;
+    }
+
+    /**
+     * n-th most similar product, most similar first
+     */
+    public int itemNeighbor(int item, int n) {
+        return items.ids[item * k + n];
+    }
+
+    public float itemSimilarity(int item, int n) {
+        return items.sims[item * k + n];
+    }
+
+    /**
+     * Exact top users for one user, searched without an index
+     * Offers every user sharing enough ratings to the caller's TopK.
+     */
+    public static void nearestUsers(RatingMatrix matrix, int user, TopK top) {
+        Scratch scratch = SCRATCH.get();
+        int candidates = computeRow(matrix, true, user, scratch);
+        for (int c = 0; c < candidates; c++) {
+            top.offer(scratch.candidates[c], scratch.sims[c]);
+        }
+    }
+
+    /**
+     * Exact top products for one product, searched without an index
+     */
+    public static void nearestItems(RatingMatrix matrix, int item, TopK top) {
+        Scratch scratch = SCRATCH.get();
+        int candidates = computeRow(matrix, false, item, scratch);
+        for (int c = 0; c < candidates; c++) {
+            top.offer(scratch.candidates[c], scratch.sims[c]);
+        }
+    }
+
+    /**
+     * Similarity of two users computed directly from their rows
+     * @return Similarity, or NaN if they share too few ratings
+     */
+    public static float userSimilarity(RatingMatrix matrix, int a, int b) {
+        float meanA = matrix.userMean(a);
+        float meanB = matrix.userMean(b);
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        int overlap = 0;
+        int i = matrix.rowStart(a);
+        int j = matrix.rowStart(b);
+        while (i < matrix.rowEnd(a) && j < matrix.rowEnd(b)) {
+            int itemA = matrix.itemAt(i);
+            int itemB = matrix.itemAt(j);
+            if (itemA < itemB) {
+                i++;
+            } else if (itemA > itemB) {
+                j++;
+            } else {
+                double da = matrix.ratingAt(i++) - meanA;
+                double db = matrix.ratingAt(j++) - meanB;
+                dot += da * db;
+                normA += da * da;
+                normB += db * db;
+                overlap++;
+            }
+        }
+        return similarity(dot, normA, normB, overlap);
+    }
+
+    /**
+     * Similarity of two products computed directly from their columns
+     * @return Similarity, or NaN if they share too few raters
+     */
+    public static float itemSimilarity(RatingMatrix matrix, int a, int b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        int overlap = 0;
+        int i = matrix.columnStart(a);
+        int j = matrix.columnStart(b);
+        while (i < matrix.columnEnd(a) && j < matrix.columnEnd(b)) {
+            int userA = matrix.userAt(i);
+            int userB = matrix.userAt(j);
+            if (userA < userB) {
+                i++;
+            } else if (userA > userB) {
+                j++;
+            } else {
+                float mean = matrix.userMean(userA);
+                double da = matrix.columnRatingAt(i++) - mean;
+                double db = matrix.columnRatingAt(j++) - mean;
+                dot += da * db;
+                normA += da * da;
+                normB += db * db;
+                overlap++;
+            }
+        }
+        return similarity(dot, normA, normB, overlap);
+    }
+
+    @Override
+    public String toString() {
+        return "SimilarityIndex[version=" + version + ", k=" + k + ", users=" + users.rows
+            + ", products=" + items.rows
+            + (bands > 0 ? ", approximate " + bands + "x" + bandRows + "x" + maxCandidates : "") + "]";
+    }
+
+    /**
+     * Significance-weighted correlation from accumulated sums, or NaN if undefined
+     */
+    static float similarity(double dot, double normA, double normB, int overlap) {
+        if (overlap < MIN_OVERLAP || normA == 0 || normB == 0) {
+            return Float.NaN;
+        }
+        double weight = Math.min(overlap, SIGNIFICANCE_OVERLAP) / (double) SIGNIFICANCE_OVERLAP;
+        return (float) (weight * dot / Math.sqrt(normA * normB));
+    }
+
+    /**
+     * Products rated by any of the users; their adjusted cosines depend on those users' means
+     */
+    private static int[] itemsRatedBy(RatingMatrix matrix, int[] changedUsers) {
+        boolean[] seen = new boolean[matrix.getItemCount()];
+        int count = 0;
+        for (int user : changedUsers) {
+            for (int p = matrix.rowStart(user); p < matrix.rowEnd(user); p++) {
+                if (!seen[matrix.itemAt(p)]) {
+                    seen[matrix.itemAt(p)] = true;
+                    count++;
+                }
+            }
+        }
+        int[] items = new int[count];
+        for (int i = 0, n = 0; i < seen.length; i++) {
+            if (seen[i]) {
+                items[n++] = i;
+            }
+        }
+        return items;
+    }
+
+    private static int[] range(int count) {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    /**
+     * Fills scratch.candidates/sims with every row similar to this one
+     * @return Number of candidates
+     */
+    private static int computeRow(RatingMatrix matrix, boolean byUser, int row, Scratch scratch) {
+        scratch.begin(byUser ? matrix.getUserCount() : matrix.getItemCount());
+        if (byUser) {
+            float mean = matrix.userMean(row);
+            for (int p = matrix.rowStart(row); p < matrix.rowEnd(row); p++) {
+                int item = matrix.itemAt(p);
+                double d = matrix.ratingAt(p) - mean;
+                for (int q = matrix.columnStart(item); q < matrix.columnEnd(item); q++) {
+                    int other = matrix.userAt(q);
+                    if (other != row) {
+                        scratch.add(other, d, matrix.columnRatingAt(q) - matrix.userMean(other));
+                    }
+                }
+            }
+        } else {
+            for (int q = matrix.columnStart(row); q < matrix.columnEnd(row); q++) {
+                int user = matrix.userAt(q);
+                float mean = matrix.userMean(user);
+                double d = matrix.columnRatingAt(q) - mean;
+                for (int p = matrix.rowStart(user); p < matrix.rowEnd(user); p++) {
+                    int other = matrix.itemAt(p);
+                    if (other != row) {
+                        scratch.add(other, d, matrix.ratingAt(p) - mean);
+                    }
+                }
+            }
+        }
+        return scratch.finish();
+    }
+
+    /**
+     * Top-K table: row r holds counts[r] entries at ids/sims[r*k ...], best first
+     */
+    private static final class Neighbors {
+        final int rows;
+        final int k;
+        final int[] ids;
+        final float[] sims;
+        final int[] counts;
+
+        Neighbors(int rows, int k) {
+            this(rows, k, new int[rows * k], new float[rows * k], new int[rows]);
+        }
+
+        private Neighbors(int rows, int k, int[] ids, float[] sims, int[] counts) {
+            this.rows = rows;
+            this.k = k;
+            this.ids = ids;
+            this.sims = sims;
+            this.counts = counts;
+        }
+
+        void set(int row, TopK top) {
+            top.sortDescending();
+            counts[row] = top.size();
+            for (int n = 0; n < top.size(); n++) {
+                ids[row * k + n] = top.id(n);
+                sims[row * k + n] = top.score(n);
+            }
+        }
+
+        float threshold(int row) {
+            return counts[row] < k ? Float.NEGATIVE_INFINITY : sims[row * k + k - 1];
+        }
+
+        /**
+         * Copy for the next snapshot with the changed rows recomputed
+         */
+        Neighbors update(RatingMatrix matrix, boolean byUser, int[] changed, ForkJoinPool pool) {
+            int newRows = byUser ? matrix.getUserCount() : matrix.getItemCount();
+            if (changed.length > newRows / REBUILD_FRACTION) {
+                Neighbors rebuilt = new Neighbors(newRows, k);
+                pool.invoke(new RowTask(matrix, byUser, range(newRows), 0, newRows, rebuilt, null, null, null, null));
+                return rebuilt;
+            }
+            Neighbors next = new Neighbors(newRows, k, Arrays.copyOf(ids, newRows * k),
+                                           Arrays.copyOf(sims, newRows * k), Arrays.copyOf(counts, newRows));
+            boolean[] isChanged = new boolean[newRows];
+            for (int row : changed) {
+                isChanged[row] = true;
+            }
+
+            // 1. Recompute changed rows, collecting the entries they may add to unchanged rows
+            Insertions insertions = new Insertions();
+            pool.invoke(new RowTask(matrix, byUser, changed, 0, changed.length, next, this, isChanged, insertions,
+                                    null));
+
+            // 2. Patch unchanged rows: entries pointing at a changed row are re-scored,
+            //    and a row whose neighbour got less similar is recomputed in step 3
+            boolean[] stale = new boolean[newRows];
+            int staleCount = 0;
+            for (int row = 0; row < rows; row++) {
+                if (isChanged[row]) {
+                    continue;
+                }
+                for (int n = 0; n < next.counts[row]; n++) {
+                    int other = next.ids[row * k + n];
+                    if (!isChanged[other]) {
+                        continue;
+                    }
+                    float sim = byUser ? userSimilarity(matrix, row, other) : itemSimilarity(matrix, row, other);
+                    if (Float.isNaN(sim) || sim < next.sims[row * k + n]) {
+                        stale[row] = true;
+                        staleCount++;
+                        break;
+                    }
+                    next.sims[row * k + n] = sim;
+                }
+                if (!stale[row]) {
+                    next.sortRow(row);
+                }
+            }
+            for (int i = 0; i < insertions.size; i++) {
+                int row = insertions.rows[i];
+                if (!stale[row] && next.indexOf(row, insertions.others[i]) < 0) {
+                    next.insert(row, insertions.others[i], insertions.sims[i]);
+                }
+            }
+
+            // 3. Recompute rows that lost ground
+            int[] staleRows = new int[staleCount];
+            for (int row = 0, n = 0; row < newRows; row++) {
+                if (stale[row]) {
+                    staleRows[n++] = row;
+                }
+            }
+            pool.invoke(new RowTask(matrix, byUser, staleRows, 0, staleRows.length, next, null, null, null, null));
+            return next;
+        }
+
+        private int indexOf(int row, int other) {
+            for (int n = 0; n < counts[row]; n++) {
+                if (ids[row * k + n] == other) {
+                    return n;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(int row, int other, float sim) {
+            if (sim <= threshold(row)) {
+                return;
+            }
+            int n = Math.min(counts[row], k - 1);
+            counts[row] = n + 1;
+            ids[row * k + n] = other;
+            sims[row * k + n] = sim;
+            sortRow(row);
+        }
+
+        /**
+         * Insertion sort, best first; rows are short and nearly sorted
+         */
+        private void sortRow(int row) {
+            int base = row * k;
+            for (int i = 1; i < counts[row]; i++) {
+                int id = ids[base + i];
+                float sim = sims[base + i];
+                int j = i - 1;
+                while (j >= 0 && sims[base + j] < sim) {
+                    ids[base + j + 1] = ids[base + j];
+                    sims[base + j + 1] = sims[base + j];
+                    j--;
+                }
+                ids[base + j + 1] = id;
+                sims[base + j + 1] = sim;
+            }
+        }
+    }
+
+    /**
+     * Computes a set of rows, splitting it across the pool
+     * With a previous table, candidates that would enter an unchanged row's
+     * top K are recorded for the incremental update. With a MinHashIndex,
+     * only its candidates are scored.
+     */
+    private static final class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RatingMatrix matrix;
+        private final boolean byUser;
+        private final int[] rows;
+        private final int from;
+        private final int to;
+        private final Neighbors target;
+        private final Neighbors previous;
+        private final boolean[] changed;
+        private final Insertions insertions;
+        private final MinHashIndex candidates;
+
+        RowTask(RatingMatrix matrix, boolean byUser, int[] rows, int from, int to, Neighbors target,
+                Neighbors previous, boolean[] changed, Insertions insertions, MinHashIndex candidates) {
+            this.matrix = matrix;
+            this.byUser = byUser;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.target = target;
+            this.previous = previous;
+            this.changed = changed;
+            this.insertions = insertions;
+            this.candidates = candidates;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(matrix, byUser, rows, from, middle, target, previous, changed, insertions,
+                                      candidates),
+                          new RowTask(matrix, byUser, rows, middle, to, target, previous, changed, insertions,
+                                      candidates));
+                return;
+            }
+            Scratch scratch = SCRATCH.get();
+            TopK top = new TopK(target.k);
+            Insertions local = previous == null ? null : new Insertions();
+            for (int i = from; i < to; i++) {
+                int row = rows[i];
+                top.clear();
+                if (candidates != null) {
+                    candidates.nearest(matrix, row, top);
+                    target.set(row, top);
+                    continue;
+                }
+                int count = computeRow(matrix, byUser, row, scratch);
+                for (int c = 0; c < count; c++) {
+                    int other = scratch.candidates[c];
+                    float sim = scratch.sims[c];
+                    top.offer(other, sim);
+                    if (local != null && other < previous.rows && !changed[other]
+                            && sim > previous.threshold(other)) {
+                        local.add(other, row, sim);
+                    }
+                }
+                target.set(row, top);
+            }
+            if (local != null) {
+                insertions.addAll(local);
+            }
+        }
+    }
+
+    /**
+     * Entries (row, other, sim) to add to unchanged rows after recomputing the changed ones
+     */
+    private static final class Insertions {
+        int[] rows = new int[16];
+        int[] others = new int[16];
+        float[] sims = new float[16];
+        int size;
+
+        void add(int row, int other, float sim) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                others = Arrays.copyOf(others, size * 2);
+                sims = Arrays.copyOf(sims, size * 2);
+            }
+            rows[size] = row;
+            others[size] = other;
+            sims[size] = sim;
+            size++;
+        }
+
+        synchronized void addAll(Insertions local) {
+            for (int i = 0; i < local.size; i++) {
+                add(local.rows[i], local.others[i], local.sims[i]);
+            }
+        }
+    }
+
+    /**
+     * Per-thread accumulators for one row, sized to the number of rows and reset sparsely
+     */
+    private static final class Scratch {
+        double[] dot = new double[0];
+        double[] normA = new double[0];
+        double[] normB = new double[0];
+        int[] overlap = new int[0];
+        int[] touched = new int[0];
+        int[] candidates = new int[0];
+        float[] sims = new float[0];
+        int touchedCount;
+
+        void begin(int rows) {
+            if (dot.length < rows) {
+                dot = new double[rows];
+                normA = new double[rows];
+                normB = new double[rows];
+                overlap = new int[rows];
+                touched = new int[rows];
+                candidates = new int[rows];
+                sims = new float[rows];
+            }
+            touchedCount = 0;
+        }
+
+        void add(int other, double a, double b) {
+            if (overlap[other]++ == 0) {
+                touched[touchedCount++] = other;
+            }
+            dot[other] += a * b;
+            normA[other] += a * a;
+            normB[other] += b * b;
+        }
+
+        /**
+         * Turns the accumulated sums into similarities and clears them
+         */
+        int finish() {
+            int count = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int other = touched[i];
+                float sim = similarity(dot[other], normA[other], normB[other], overlap[other]);
+                if (!Float.isNaN(sim)) {
+                    candidates[count] = other;
+                    sims[count] = sim;
+                    count++;
+                }
+                dot[other] = 0;
+                normA[other] = 0;
+                normB[other] = 0;
+                overlap[other] = 0;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Keeps the k highest-scoring ids offered to it, using a primitive min-heap
+ * Reusable through clear(), so hot loops select without allocating.
+ *
+ * @author Santosh
+ * @version 1.0
+ */
+public class TopK {
+
+    private final int k;
+    private final int[] ids;
+    private final float[] scores;
+    private int size;
+
+    public TopK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.k = k;
+        this.ids = new int[k];
+        this.scores = new float[k];
+    }
+
+    /**
+     * Offers a candidate
+     * @return true if it is currently among the top k
+     */
+    public boolean offer(int id, float score) {
+        if (size < k) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        ids[0] = id;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Lowest score kept, or negative infinity while fewer than k were offered
+     */
+    public float threshold() {
+        return size < k ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return k;
+    }
+
+    /**
+     * Sorts the kept entries best first; id(i) and score(i) then read them in order
+     * The heap is consumed, so call clear() before offering again.
+     */
+    public void sortDescending() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    public int id(int index) {
+        return ids[index];
+    }
+
+    public float score(int index) {
+        return scores[index];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        siftDown(index, size);
+    }
+
+    private void siftDown(int index, int end) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (scores[index] <= scores[child]) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}